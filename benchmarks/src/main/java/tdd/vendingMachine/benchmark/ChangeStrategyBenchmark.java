@@ -0,0 +1,76 @@
+package tdd.vendingMachine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Single change computation. Large amounts with many coins show how the decimal map of the dynamic strategy grows,
+ * small coin counts with large amounts measure the "can't return" path
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChangeStrategyBenchmark {
+    @Param({"dynamic", "array", "greedy", "cached"})
+    public String strategy;
+
+    @Param({"3", "6", "9", "non-canonical"})
+    public String denominationSet;
+
+    @Param({"3", "100"})
+    public int coinCount;
+
+    @Param({"30", "870", "9550"})
+    public long amount;
+
+    private ReturnAmountByDenominationsStrategy subject;
+    private long[] denominations;
+    private int[] counts;
+    private int[] usedCoins;
+
+    @Setup
+    public void setup() {
+        subject = Strategies.create(strategy);
+        denominations = denominations(denominationSet);
+        counts = new int[denominations.length];
+        Arrays.fill(counts, coinCount);
+        usedCoins = new int[denominations.length];
+    }
+
+    @Benchmark
+    public ChangeStatus execute() {
+        return subject.execute(denominations, counts, amount, usedCoins);
+    }
+
+    private static long[] denominations(String set) {
+        switch (set) {
+            case "3":
+                return new long[]{500, 100, 10};
+            case "6":
+                return new long[]{500, 200, 100, 50, 20, 10};
+            case "9":
+                return new long[]{2000, 1000, 500, 200, 100, 50, 20, 10, 5};
+            case "non-canonical":
+                return new long[]{400, 300, 100, 10};
+            default:
+                throw new IllegalArgumentException("Unknown denomination set " + set);
+        }
+    }
+}
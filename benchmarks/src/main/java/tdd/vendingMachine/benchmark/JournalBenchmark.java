@@ -0,0 +1,148 @@
+package tdd.vendingMachine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.Configuration;
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.MoneyFactory;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingShelf;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.persistence.JournalReplay;
+import tdd.vendingMachine.persistence.JournalingVendingMachine;
+import tdd.vendingMachine.persistence.TransactionJournal;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of journaling a purchase (compare with PurchaseCycleBenchmark, syncEvery "none" is a machine without journal)
+ * and speed of replaying a journal of purchases. The journal is recreated every iteration so it doesn't grow
+ * without bounds
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+    private static final int CROISSANT_SHELF = 4;
+    private static final int PLENTY = 1_000_000_000;
+    private static final Money FIVE = MoneyFactory.createMoney(5);
+    private static final Money TWO = MoneyFactory.createMoney(2);
+
+    @State(Scope.Thread)
+    public static class Journaled {
+        @Param({"none", "0", "1024", "1"})
+        public String syncEvery;
+
+        private Path path;
+        private TransactionJournal journal;
+        private VendingMachine machine;
+
+        @Setup(Level.Iteration)
+        public void setup() throws IOException {
+            if (syncEvery.equals("none")) {
+                machine = createMachine(null);
+                return;
+            }
+            path = Files.createTempFile("vending", ".journal");
+            journal = TransactionJournal.open(path, Integer.parseInt(syncEvery));
+            machine = createMachine(journal);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            if (journal == null)
+                return;
+            journal.close();
+            Files.delete(path);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recorded {
+        @Param({"1000000"})
+        public int purchases;
+
+        private Path path;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            path = Files.createTempFile("vending", ".journal");
+            try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+                VendingMachine machine = createMachine(journal);
+                for (int i = 0; i < purchases; i++)
+                    purchase(machine);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void purchase(Journaled state) {
+        purchase(state.machine);
+    }
+
+    /**
+     * Every purchase is 7 records, divide the score by that for time per record
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long replay(Recorded state) throws IOException {
+        return JournalReplay.replay(state.path, createMachine(null));
+    }
+
+    private static void purchase(VendingMachine machine) {
+        machine.selectShelf(CROISSANT_SHELF);
+        machine.insertCoin(FIVE);
+        machine.insertCoin(TWO);
+        machine.insertCoin(TWO);
+        machine.receiveItem();
+        machine.receiveChangeMoney();
+    }
+
+    private static VendingMachine createMachine(TransactionJournal journal) {
+        List<VendingShelf> shelves = new ArrayList<>();
+        for (ProductType product : Configuration.getDefaultProductsSet())
+            shelves.add(new VendingShelf(product, PLENTY));
+
+        long[] denominations = Configuration.getDefaultCoinSet().getDenominations();
+        int[] counts = new int[denominations.length];
+        Arrays.fill(counts, PLENTY);
+        CoinInventory coins = new CoinInventory(denominations, counts);
+
+        if (journal == null)
+            return new VendingMachine(new NullVendingDisplay(), new GreedyReturnAmountStrategy(), shelves, coins);
+        return new JournalingVendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            shelves,
+            coins,
+            journal
+        );
+    }
+}
@@ -0,0 +1,89 @@
+package tdd.vendingMachine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.Configuration;
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.MoneyFactory;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingShelf;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.metrics.InstrumentedReturnAmountStrategy;
+import tdd.vendingMachine.metrics.InstrumentedVendingDisplay;
+import tdd.vendingMachine.metrics.MachineMetrics;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Purchase of PurchaseCycleBenchmark without metrics, with the machine hooks only, and with the strategy and display
+ * wrapped as well
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    private static final int CROISSANT_SHELF = 4;
+    private static final int PLENTY = 1_000_000_000;
+
+    @Param({"off", "machine", "full"})
+    public String instrumentation;
+
+    private final Money five = MoneyFactory.createMoney(5);
+    private final Money two = MoneyFactory.createMoney(2);
+
+    private VendingMachine machine;
+
+    @Setup
+    public void setup() {
+        List<VendingShelf> shelves = new ArrayList<>();
+        for (ProductType product : Configuration.getDefaultProductsSet())
+            shelves.add(new VendingShelf(product, PLENTY));
+
+        long[] denominations = Configuration.getDefaultCoinSet().getDenominations();
+        int[] counts = new int[denominations.length];
+        Arrays.fill(counts, PLENTY);
+
+        MachineMetrics metrics = new MachineMetrics();
+        VendingDisplay display = new NullVendingDisplay();
+        ReturnAmountByDenominationsStrategy strategy = new GreedyReturnAmountStrategy();
+        if (instrumentation.equals("full")) {
+            display = new InstrumentedVendingDisplay(display, metrics.getDisplayHistogram());
+            strategy = new InstrumentedReturnAmountStrategy(strategy, metrics.getChangeHistogram());
+        }
+
+        machine = new VendingMachine(display, strategy, shelves, new CoinInventory(denominations, counts));
+        if (!instrumentation.equals("off"))
+            machine.setMetrics(metrics);
+    }
+
+    @Benchmark
+    public void purchase(Blackhole blackhole) {
+        machine.selectShelf(CROISSANT_SHELF);
+        machine.insertCoin(five);
+        machine.insertCoin(two);
+        machine.insertCoin(two);
+        blackhole.consume(machine.receiveItem());
+        blackhole.consume(machine.receiveChangeMoney());
+    }
+}
@@ -0,0 +1,163 @@
+package tdd.vendingMachine.benchmark;
+
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.Configuration;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingShelf;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.metrics.LatencyHistogram;
+import tdd.vendingMachine.server.MachineProtocol;
+import tdd.vendingMachine.server.MachineServer;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Load client of MachineServer, not a JMH benchmark since the interesting part is the round trip through the socket.
+ * Every connection drives its own machine through a purchase, receiving, cancel and query over and over, keeping
+ * the given number of requests in flight. A request's tag is the time it was sent, so the round trip is measured
+ * without keeping track of requests on the client.
+ *
+ *     java -cp benchmarks/target/benchmarks.jar tdd.vendingMachine.benchmark.ServerLoadClient \
+ *         [connections] [depth] [seconds] [host:port]
+ *
+ * Without an address the server is started in the same process, on the loopback
+ */
+public class ServerLoadClient {
+    private static final int PLENTY = 1_000_000_000;
+    private static final int WATER_SHELF = 3;
+
+    private static final byte[] OPCODES = {
+        MachineProtocol.SELECT_SHELF,
+        MachineProtocol.INSERT_COIN,
+        MachineProtocol.RECEIVE_ITEM,
+        MachineProtocol.RECEIVE_CHANGE,
+        MachineProtocol.CANCEL_ORDER,
+        MachineProtocol.QUERY_STATE
+    };
+    private static final int[] ARGUMENTS = {WATER_SHELF, 50, 0, 0, 0, 0};
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        MachineServer server = null;
+        InetSocketAddress address;
+        if (args.length > 3) {
+            String[] hostAndPort = args[3].split(":");
+            address = new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1]));
+        } else {
+            List<VendingMachine> machines = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++)
+                machines.add(createMachine());
+            server = new MachineServer(machines, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            address = server.getAddress();
+        }
+
+        LatencyHistogram roundTrip = new LatencyHistogram();
+        LongAdder commands = new LongAdder();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            int machine = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    drive(address, machine, depth, end, roundTrip, commands);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Connection " + machine + " failed", e);
+                }
+            }, "load-client-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (server != null)
+            server.close();
+
+        System.out.println("connections=" + connections + " depth=" + depth + " seconds=" + seconds);
+        System.out.println("commands/s " + commands.sum() / seconds);
+        System.out.println("round trip[ns] " + roundTrip.snapshot());
+    }
+
+    private static void drive(
+        InetSocketAddress address,
+        int machine,
+        int depth,
+        long end,
+        LatencyHistogram roundTrip,
+        LongAdder commands
+    ) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.socket().setTcpNoDelay(true);
+            ByteBuffer requests = ByteBuffer.allocateDirect(depth * MachineProtocol.REQUEST_SIZE);
+            ByteBuffer responses = ByteBuffer.allocateDirect(depth * MachineProtocol.RESPONSE_SIZE);
+
+            int step = 0;
+            for (int i = 0; i < depth; i++, step++)
+                putRequest(requests, machine, step);
+            send(channel, requests);
+
+            long inFlight = depth;
+            long done = 0;
+            while (inFlight > 0) {
+                if (channel.read(responses) < 0)
+                    throw new IOException("Server closed the connection");
+                int complete = responses.position() / MachineProtocol.RESPONSE_SIZE;
+                long now = System.nanoTime();
+                boolean more = now < end;
+                for (int i = 0; i < complete; i++) {
+                    int offset = i * MachineProtocol.RESPONSE_SIZE;
+                    roundTrip.record(now - MachineProtocol.getTag(responses, offset));
+                    done++;
+                    if (more)
+                        putRequest(requests, machine, step++);
+                    else
+                        inFlight--;
+                }
+                responses.flip();
+                responses.position(complete * MachineProtocol.RESPONSE_SIZE);
+                responses.compact();
+                send(channel, requests);
+            }
+            commands.add(done);
+        }
+    }
+
+    private static void putRequest(ByteBuffer requests, int machine, int step) {
+        int command = step % OPCODES.length;
+        MachineProtocol.putRequest(requests, OPCODES[command], machine, ARGUMENTS[command], System.nanoTime());
+    }
+
+    private static void send(SocketChannel channel, ByteBuffer requests) throws IOException {
+        requests.flip();
+        while (requests.hasRemaining())
+            channel.write(requests);
+        requests.clear();
+    }
+
+    private static VendingMachine createMachine() {
+        List<VendingShelf> shelves = new ArrayList<>();
+        for (ProductType product : Configuration.getDefaultProductsSet())
+            shelves.add(new VendingShelf(product, PLENTY));
+        long[] denominations = Configuration.getDefaultCoinSet().getDenominations();
+        int[] counts = new int[denominations.length];
+        Arrays.fill(counts, PLENTY);
+        return new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            shelves,
+            new CoinInventory(denominations, counts)
+        );
+    }
+}
@@ -0,0 +1,70 @@
+package tdd.vendingMachine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.persistence.MachineSnapshot;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Writing and restoring a snapshot of a whole fleet of default machines
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({"100000"})
+    public int machines;
+
+    private List<VendingMachine> fleet;
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        fleet = new ArrayList<>(machines);
+        for (int i = 0; i < machines; i++) {
+            VendingMachine machine = new VendingMachine();
+            machine.restockShelf(i % machine.getShelfCount(), i % 7);
+            fleet.add(machine);
+        }
+        path = Files.createTempFile("fleet", ".snapshot");
+        MachineSnapshot.write(path, fleet);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        MachineSnapshot.write(path, fleet);
+    }
+
+    @Benchmark
+    public List<VendingMachine> restore() throws IOException {
+        return MachineSnapshot.read(path, NullVendingDisplay::new, GreedyReturnAmountStrategy::new);
+    }
+}
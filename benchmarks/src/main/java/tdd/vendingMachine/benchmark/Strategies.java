@@ -0,0 +1,27 @@
+package tdd.vendingMachine.benchmark;
+
+import tdd.vendingMachine.strategy.ArrayReturnAmountStrategy;
+import tdd.vendingMachine.strategy.CachingReturnAmountStrategy;
+import tdd.vendingMachine.strategy.DynamicReturnAmountStrategy;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+final class Strategies {
+    private Strategies() {
+    }
+
+    static ReturnAmountByDenominationsStrategy create(String name) {
+        switch (name) {
+            case "dynamic":
+                return new DynamicReturnAmountStrategy();
+            case "array":
+                return new ArrayReturnAmountStrategy();
+            case "greedy":
+                return new GreedyReturnAmountStrategy();
+            case "cached":
+                return new CachingReturnAmountStrategy(new GreedyReturnAmountStrategy(), 1024);
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + name);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package tdd.vendingMachine;
+
+/**
+ * Quantity of products from one shelf in a basket bought with VendingMachine.buyBasket
+ */
+public class BasketLine {
+    private final int shelfNumber;
+    private final int quantity;
+
+    public BasketLine(int shelfNumber, int quantity) {
+        if (quantity <= 0)
+            throw new IllegalArgumentException("Quantity has to be positive: " + quantity);
+        this.shelfNumber = shelfNumber;
+        this.quantity = quantity;
+    }
+
+    public int getShelfNumber() {
+        return shelfNumber;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+}
@@ -0,0 +1,21 @@
+package tdd.vendingMachine;
+
+public enum BasketStatus {
+    SOLD,
+    /**
+     * Some shelf doesn't have enough products, nothing was sold and the credit is kept
+     */
+    NOT_ENOUGH_PRODUCTS,
+    /**
+     * Credit doesn't cover the basket, nothing was sold and the credit is kept
+     */
+    NOT_ENOUGH_MONEY,
+    /**
+     * Change couldn't be paid, nothing was sold and the credit was returned
+     */
+    NO_CHANGE,
+    /**
+     * Change strategy ran out of its budget, nothing was sold and the credit was returned
+     */
+    CHANGE_TIMED_OUT
+}
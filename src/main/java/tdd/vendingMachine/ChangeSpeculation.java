@@ -0,0 +1,97 @@
+package tdd.vendingMachine;
+
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/*
+ * Change plans for every coin that could finish a purchase, calculated in the background while the customer is still
+ * looking for the coin. Once a shelf is selected the change can only be the credit plus one of the denominations minus
+ * the price, and the coins paying it are the current ones plus that final coin, so there are as many plans as
+ * denominations.
+ * A plan only depends on the coins and the amount, so it's used only if the coins at the sale are exactly the ones it
+ * was calculated for. Any change to them in between (another coin, a refill, a previous sale) makes the lookup miss and
+ * the machine calculates the change as usual
+ */
+class ChangeSpeculation {
+    private static final long NO_SALE = -1;
+
+    private final long[] denominations;
+    // Coins of the machine when started, with the escrowed ones
+    private final int[] baseCounts;
+    private final long[] changes;
+    private final ChangeStatus[] statuses;
+    private final int[][] plans;
+    private final CompletableFuture<Void> calculation;
+
+    /**
+     * @param escrow coins put aside for the sale, null without escrow
+     * @param strategy used only by speculations, calls are serialized on it
+     */
+    ChangeSpeculation(
+        CoinInventory coins,
+        int[] escrow,
+        long price,
+        long credit,
+        ReturnAmountByDenominationsStrategy strategy,
+        Executor executor
+    ) {
+        denominations = coins.getDenominations();
+        baseCounts = coins.getCounts();
+        if (escrow != null)
+            for (int i = 0; i < baseCounts.length; i++)
+                baseCounts[i] += escrow[i];
+        changes = new long[denominations.length];
+        for (int i = 0; i < denominations.length; i++)
+            changes[i] = credit + denominations[i] >= price ? credit + denominations[i] - price : NO_SALE;
+        statuses = new ChangeStatus[denominations.length];
+        plans = new int[denominations.length][denominations.length];
+        calculation = CompletableFuture.runAsync(() -> calculate(strategy), executor);
+    }
+
+    private void calculate(ReturnAmountByDenominationsStrategy strategy) {
+        int[] counts = new int[baseCounts.length];
+        synchronized (strategy) {
+            for (int i = 0; i < denominations.length; i++) {
+                if (changes[i] == NO_SALE)
+                    continue;
+                System.arraycopy(baseCounts, 0, counts, 0, counts.length);
+                counts[i]++;
+                statuses[i] = strategy.execute(denominations, counts, changes[i], plans[i]);
+            }
+        }
+    }
+
+    /**
+     * @param coins coins the change is going to be paid from, with the final coin and the escrowed ones
+     * @return null if there's no plan for the coins and the amount yet
+     */
+    ChangeStatus lookup(CoinInventory coins, long change, int[] usedCoins) {
+        if (!calculation.isDone() || calculation.isCompletedExceptionally())
+            return null;
+        for (int i = 0; i < changes.length; i++) {
+            if (changes[i] != change || !isBasePlusCoin(coins, i))
+                continue;
+            // The machine's own strategy may still make it
+            if (statuses[i] == ChangeStatus.TIMED_OUT)
+                return null;
+            if (statuses[i] == ChangeStatus.FOUND)
+                System.arraycopy(plans[i], 0, usedCoins, 0, plans[i].length);
+            return statuses[i];
+        }
+        return null;
+    }
+
+    void cancel() {
+        calculation.cancel(false);
+    }
+
+    private boolean isBasePlusCoin(CoinInventory coins, int coinIndex) {
+        for (int i = 0; i < baseCounts.length; i++)
+            if (coins.getCount(i) != baseCounts[i] + (i == coinIndex ? 1 : 0))
+                return false;
+        return true;
+    }
+}
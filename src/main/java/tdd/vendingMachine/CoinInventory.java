@@ -0,0 +1,218 @@
+package tdd.vendingMachine;
+
+import javafx.util.Pair;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Coins owned by the machine. Denominations are fixed at creation, counts are plain ints indexed the same way.
+ * Inserted coin is found by its value divided by the greatest common divisor of denominations, which for real coin
+ * sets is a lookup table of a few dozen entries. Denominations too far apart for a table of MAX_TABLE_SIZE entries
+ * are looked up by binary search instead
+ */
+public class CoinInventory {
+    private static final int NOT_ACCEPTED = -1;
+    private static final int MAX_TABLE_SIZE = 4096;
+    private static final long MAX_TRACKED_AMOUNTS = 1 << 20;
+
+    private final long[] denominations;
+    private final int[] counts;
+    private final long unit;
+    // Null when the table would be too big, then the coin is searched for in sortedDenominations
+    private final int[] indexByUnits;
+    private final long[] sortedDenominations;
+    private final int[] sortedIndexes;
+    private ReachableChangeSet reachable;
+
+    /**
+     *
+     * @param denominations value of each accepted coin in cents, every value at most once
+     * @param counts how many coins of each denomination the machine starts with
+     */
+    public CoinInventory(long[] denominations, int[] counts) {
+        if (denominations.length != counts.length)
+            throw new IllegalArgumentException("Every denomination needs a count");
+
+        long gcd = 0;
+        long max = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] <= 0)
+                throw new IllegalArgumentException("Denomination has to be positive: " + denominations[i]);
+            if (counts[i] < 0)
+                throw new IllegalArgumentException("Coin count can't be negative: " + counts[i]);
+            gcd = gcd(gcd, denominations[i]);
+            max = Math.max(max, denominations[i]);
+        }
+
+        this.denominations = denominations.clone();
+        this.counts = counts.clone();
+        this.unit = Math.max(gcd, 1);
+        if (max / unit < MAX_TABLE_SIZE) {
+            this.indexByUnits = new int[(int) (max / unit + 1)];
+            this.sortedDenominations = null;
+            this.sortedIndexes = null;
+            Arrays.fill(indexByUnits, NOT_ACCEPTED);
+            for (int i = 0; i < denominations.length; i++) {
+                int slot = (int) (denominations[i] / unit);
+                if (indexByUnits[slot] != NOT_ACCEPTED)
+                    throw new IllegalArgumentException("Duplicated denomination: " + denominations[i]);
+                indexByUnits[slot] = i;
+            }
+        } else {
+            this.indexByUnits = null;
+            this.sortedDenominations = this.denominations.clone();
+            Arrays.sort(sortedDenominations);
+            this.sortedIndexes = new int[denominations.length];
+            for (int i = 0; i < denominations.length; i++) {
+                int position = Arrays.binarySearch(sortedDenominations, denominations[i]);
+                if (position > 0 && sortedDenominations[position - 1] == denominations[i] ||
+                    position < denominations.length - 1 && sortedDenominations[position + 1] == denominations[i])
+                    throw new IllegalArgumentException("Duplicated denomination: " + denominations[i]);
+                sortedIndexes[position] = i;
+            }
+        }
+    }
+
+    public static CoinInventory of(List<Pair<BigDecimal, Integer>> coins) {
+        long[] denominations = new long[coins.size()];
+        int[] counts = new int[coins.size()];
+        for (int i = 0; i < coins.size(); i++) {
+            denominations[i] = Money.fromBigDecimal(coins.get(i).getKey()).getCents();
+            counts[i] = coins.get(i).getValue();
+        }
+        return new CoinInventory(denominations, counts);
+    }
+
+    /**
+     * Starts keeping track of which amounts up to the bound the coins can pay, see mayPay. Copies don't track.
+     * Nothing is tracked when the bound is more than MAX_TRACKED_AMOUNTS units, mayPay is always true then
+     */
+    public void trackReachable(long bound) {
+        if (bound / unit < MAX_TRACKED_AMOUNTS)
+            reachable = new ReachableChangeSet(denominations, counts, unit, bound);
+        else
+            reachable = null;
+    }
+
+    public CoinInventory copy() {
+        return new CoinInventory(denominations, counts);
+    }
+
+    public int size() {
+        return denominations.length;
+    }
+
+    public long getDenomination(int index) {
+        return denominations[index];
+    }
+
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @return index of the denomination or -1 if the machine doesn't accept such coin
+     */
+    public int indexOf(long cents) {
+        if (cents <= 0 || cents % unit != 0)
+            return NOT_ACCEPTED;
+        if (indexByUnits == null) {
+            int position = Arrays.binarySearch(sortedDenominations, cents);
+            return position < 0 ? NOT_ACCEPTED : sortedIndexes[position];
+        }
+        if (cents / unit >= indexByUnits.length)
+            return NOT_ACCEPTED;
+        return indexByUnits[(int) (cents / unit)];
+    }
+
+    /**
+     * @return false if the coin is not accepted by the machine
+     */
+    public boolean add(Money coin) {
+        int index = indexOf(coin.getCents());
+        if (index == NOT_ACCEPTED)
+            return false;
+        counts[index]++;
+        if (reachable != null)
+            reachable.coinAdded(index);
+        return true;
+    }
+
+    public void addAll(int[] plan) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += plan[i];
+        if (reachable != null)
+            reachable.coinsAdded(plan);
+    }
+
+    public void removeAll(int[] plan) {
+        for (int i = 0; i < counts.length; i++) {
+            assert counts[i] >= plan[i];
+            counts[i] -= plan[i];
+        }
+        if (reachable != null)
+            reachable.coinsRemoved(plan);
+    }
+
+    /**
+     * Quick check before asking a strategy. Without tracking, or above the tracked bound, the answer is always true
+     *
+     * @return false if no combination of coins pays the amount exactly
+     */
+    public boolean mayPay(long cents) {
+        return reachable == null || cents > reachable.getBound() || reachable.contains(cents);
+    }
+
+    /**
+     * Asks the strategy how to pay the amount with the coins currently in the inventory, nothing is removed
+     */
+    public ChangeStatus findChange(ReturnAmountByDenominationsStrategy strategy, long amount, int[] usedCoins) {
+        return strategy.execute(denominations, counts, amount, usedCoins);
+    }
+
+    public Money getTotal() {
+        long total = 0;
+        for (int i = 0; i < counts.length; i++)
+            total += denominations[i] * counts[i];
+        return Money.ofCents(total);
+    }
+
+    /**
+     * @return copy of the current counts, in denomination order
+     */
+    public int[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * Same as {@link #getCounts()} but into a caller owned buffer
+     */
+    public void copyCounts(int[] into) {
+        System.arraycopy(counts, 0, into, 0, counts.length);
+    }
+
+    public long[] getDenominations() {
+        return denominations.clone();
+    }
+
+    public List<Pair<BigDecimal, Integer>> toPairs() {
+        List<Pair<BigDecimal, Integer>> result = new ArrayList<>(denominations.length);
+        for (int i = 0; i < denominations.length; i++)
+            result.add(new Pair<>(Money.ofCents(denominations[i]).toBigDecimal(), counts[i]));
+        return result;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long tmp = a % b;
+            a = b;
+            b = tmp;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,140 @@
+package tdd.vendingMachine;
+
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/*
+ * Kiosk variant of the vending machine, where many customers (each one at their own touchscreen, see VendingSession)
+ * buy from the same shelves and pay into the same coins.
+ *  - Customer's credit, selection and inserted coins are kept in their session and never touch shared state until
+ *    the sale
+ *  - Shelf stock is counted in place by every VendingShelf, a sale takes a product with compare-and-set so a shelf
+ *    is never oversold and sales from different shelves don't touch the same counter
+ *  - Change is calculated outside of any lock on a snapshot of coins, and written back only if nobody changed them
+ *    in the meantime, so the only serialized part of a sale is copying a few ints
+ * Strategies are not thread safe, so every session gets its own one
+ */
+public class ConcurrentVendingMachine {
+    private static final int OPTIMISTIC_ATTEMPTS = 8;
+
+    private final Supplier<? extends ReturnAmountByDenominationsStrategy> strategyFactory;
+    private final VendingShelf[] shelves;
+
+    private final StampedLock coinsLock = new StampedLock();
+    private final CoinInventory coins;
+    private final long[] denominations;
+
+    public ConcurrentVendingMachine() {
+        this(GreedyReturnAmountStrategy::new, Configuration.getDefaultShelfSet(), Configuration.getDefaultCoinSet());
+    }
+
+    public ConcurrentVendingMachine(
+        Supplier<? extends ReturnAmountByDenominationsStrategy> strategyFactory,
+        List<VendingShelf> shelves,
+        CoinInventory coins
+    ) {
+        this.strategyFactory = strategyFactory;
+        this.shelves = new VendingShelf[shelves.size()];
+        for (int i = 0; i < shelves.size(); i++)
+            this.shelves[i] = shelves.get(i).snapshot();
+        this.coins = coins.copy();
+        this.denominations = coins.getDenominations();
+    }
+
+    /**
+     * @param display display of the touchscreen the customer is using
+     */
+    public VendingSession openSession(VendingDisplay display) {
+        return new VendingSession(this, display, strategyFactory.get());
+    }
+
+    public int getShelfCount() {
+        return shelves.length;
+    }
+
+    public ProductType getProductType(int shelfNumber) {
+        return shelves[shelfNumber].getProductType();
+    }
+
+    public int getProductCount(int shelfNumber) {
+        return shelves[shelfNumber].getProductCount();
+    }
+
+    public CoinInventory getCoins() {
+        long stamp = coinsLock.readLock();
+        try {
+            return coins.copy();
+        } finally {
+            coinsLock.unlockRead(stamp);
+        }
+    }
+
+    int getDenominationCount() {
+        return denominations.length;
+    }
+
+    int indexOfCoin(Money coin) {
+        // Denominations never change, no need to lock
+        return coins.indexOf(coin.getCents());
+    }
+
+    boolean takeProduct(int shelfNumber) {
+        return shelves[shelfNumber].tryTakeProduct();
+    }
+
+    void returnProduct(int shelfNumber) {
+        shelves[shelfNumber].restock(1);
+    }
+
+    /**
+     * Puts the inserted coins into the machine and takes the change out of it in one step. If the change can't be
+     * returned coins are left untouched
+     *
+     * @param countsBuffer scratch buffer of the session, as long as denominations
+     * @param usedCoins receives the coins of the change
+     */
+    ChangeStatus exchange(
+        int[] insertedCoins,
+        long change,
+        ReturnAmountByDenominationsStrategy strategy,
+        int[] countsBuffer,
+        int[] usedCoins
+    ) {
+        for (int attempt = 0; ; attempt++) {
+            boolean optimistic = attempt < OPTIMISTIC_ATTEMPTS;
+            long stamp = optimistic ? coinsLock.tryOptimisticRead() : coinsLock.writeLock();
+            if (stamp == 0)
+                continue;
+
+            coins.copyCounts(countsBuffer);
+            if (optimistic && !coinsLock.validate(stamp))
+                continue;
+            for (int i = 0; i < countsBuffer.length; i++)
+                countsBuffer[i] += insertedCoins[i];
+
+            ChangeStatus status = strategy.execute(denominations, countsBuffer, change, usedCoins);
+            if (optimistic) {
+                if (status != ChangeStatus.FOUND)
+                    return status;
+                stamp = coinsLock.tryConvertToWriteLock(stamp);
+                if (stamp == 0)
+                    continue;
+            }
+            try {
+                if (status == ChangeStatus.FOUND) {
+                    coins.addAll(insertedCoins);
+                    coins.removeAll(usedCoins);
+                }
+                return status;
+            } finally {
+                coinsLock.unlockWrite(stamp);
+            }
+        }
+    }
+}
@@ -1,21 +1,21 @@
 package tdd.vendingMachine;
 
-import javafx.util.Pair;
-
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class Configuration {
-    public static List<Pair<BigDecimal, Integer>> getDefaultCoinSet() {
-        return Arrays.asList(
-            new Pair<>(MoneyFactory.createCoin(5), 3),
-            new Pair<>(MoneyFactory.createCoin(2), 3),
-            new Pair<>(MoneyFactory.createCoin(1), 3),
-            new Pair<>(MoneyFactory.createCoin(0, 5), 3),
-            new Pair<>(MoneyFactory.createCoin(0, 2), 3),
-            new Pair<>(MoneyFactory.createCoin(0, 1), 3)
+    public static CoinInventory getDefaultCoinSet() {
+        return new CoinInventory(
+            new long[]{
+                MoneyFactory.createMoney(5).getCents(),
+                MoneyFactory.createMoney(2).getCents(),
+                MoneyFactory.createMoney(1).getCents(),
+                MoneyFactory.createMoney(0, 5).getCents(),
+                MoneyFactory.createMoney(0, 2).getCents(),
+                MoneyFactory.createMoney(0, 1).getCents()
+            },
+            new int[]{3, 3, 3, 3, 3, 3}
         );
     }
 
@@ -30,11 +30,11 @@ public class Configuration {
 
     public static List<ProductType> getDefaultProductsSet() {
         return Arrays.asList(
-            new ProductType(MoneyFactory.createCoin(2), "Soda drink"),
-            new ProductType(MoneyFactory.createCoin(1, 5), "Cookie"),
-            new ProductType(MoneyFactory.createCoin(0, 9), "Candy"),
-            new ProductType(MoneyFactory.createCoin(0, 4), "Water"),
-            new ProductType(MoneyFactory.createCoin(8, 7), "Croissant")
+            new ProductType(MoneyFactory.createMoney(2), "Soda drink"),
+            new ProductType(MoneyFactory.createMoney(1, 5), "Cookie"),
+            new ProductType(MoneyFactory.createMoney(0, 9), "Candy"),
+            new ProductType(MoneyFactory.createMoney(0, 4), "Water"),
+            new ProductType(MoneyFactory.createMoney(8, 7), "Croissant")
         );
     }
 }
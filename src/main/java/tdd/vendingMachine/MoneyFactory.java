@@ -1,8 +1,6 @@
 package tdd.vendingMachine;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.math.RoundingMode;
 
 public class MoneyFactory {
     public static BigDecimal zero() {
@@ -16,16 +14,23 @@ public class MoneyFactory {
      * @return
      */
     public static BigDecimal createCoin(int integerPart, int decimalPart) {
-        if (decimalPart < 0 || decimalPart > 99)
-            throw new IllegalArgumentException("Decimal part is not between 0-99");
-        return new BigDecimal(integerPart)
-            .multiply(new BigDecimal(10))
-            .add(new BigDecimal(decimalPart))
-            .movePointLeft(1)
-            .setScale(2, RoundingMode.UNNECESSARY);
+        return createMoney(integerPart, decimalPart).toBigDecimal();
     }
 
     public static BigDecimal createCoin(int integerPart) {
         return createCoin(integerPart, 0);
     }
+
+    /**
+     * Same as {@link #createCoin(int, int)} but without going through BigDecimal
+     */
+    public static Money createMoney(int integerPart, int decimalPart) {
+        if (decimalPart < 0 || decimalPart > 99)
+            throw new IllegalArgumentException("Decimal part is not between 0-99");
+        return Money.ofCents(integerPart * 100L + decimalPart * 10L);
+    }
+
+    public static Money createMoney(int integerPart) {
+        return createMoney(integerPart, 0);
+    }
 }
@@ -0,0 +1,174 @@
+package tdd.vendingMachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Index of the shelves of a machine by shelf code ("A12") and of products by SKU, for machines with thousands of
+ * shelves. Shelves are kept as parallel arrays (price in cents, stock, product index), so scans over all shelves read
+ * a few dense arrays instead of following a reference per shelf. Shelves of every product are stored back to back
+ * (product i owns shelvesByProduct[shelvesStart[i]..shelvesStart[i + 1])) and the total stock of every product is
+ * kept up to date, so both are answered without a scan.
+ * The machine that created the catalog keeps its stock up to date, see VendingMachine.createCatalog
+ */
+public class ProductCatalog {
+    private final String[] shelfCodes;
+    private final long[] prices;
+    private final int[] stock;
+    private final int[] productOfShelf;
+    private final Map<String, Integer> shelfByCode;
+
+    private final ProductType[] products;
+    private final Map<String, Integer> productBySku;
+    private final int[] shelvesStart;
+    private final int[] shelvesByProduct;
+    private final long[] totalStock;
+
+    /**
+     * @param shelfCodes code of every shelf, in shelf order
+     */
+    public ProductCatalog(List<VendingShelf> shelves, List<String> shelfCodes) {
+        if (shelves.size() != shelfCodes.size())
+            throw new IllegalArgumentException("Every shelf needs a code");
+
+        int shelfCount = shelves.size();
+        this.shelfCodes = shelfCodes.toArray(new String[0]);
+        this.prices = new long[shelfCount];
+        this.stock = new int[shelfCount];
+        this.productOfShelf = new int[shelfCount];
+        this.shelfByCode = new HashMap<>(shelfCount * 2);
+
+        List<ProductType> productList = new ArrayList<>();
+        this.productBySku = new HashMap<>();
+        for (int i = 0; i < shelfCount; i++) {
+            VendingShelf shelf = shelves.get(i);
+            if (shelfByCode.put(this.shelfCodes[i], i) != null)
+                throw new IllegalArgumentException("Duplicated shelf code: " + this.shelfCodes[i]);
+
+            Integer product = productBySku.get(shelf.getProductType().getSku());
+            if (product == null) {
+                product = productList.size();
+                productBySku.put(shelf.getProductType().getSku(), product);
+                productList.add(shelf.getProductType());
+            }
+            prices[i] = shelf.getPriceMoney().getCents();
+            stock[i] = shelf.getProductCount();
+            productOfShelf[i] = product;
+        }
+
+        this.products = productList.toArray(new ProductType[0]);
+        this.shelvesStart = new int[products.length + 1];
+        this.totalStock = new long[products.length];
+        for (int i = 0; i < shelfCount; i++) {
+            shelvesStart[productOfShelf[i] + 1]++;
+            totalStock[productOfShelf[i]] += stock[i];
+        }
+        for (int i = 0; i < products.length; i++)
+            shelvesStart[i + 1] += shelvesStart[i];
+        this.shelvesByProduct = new int[shelfCount];
+        int[] next = Arrays.copyOf(shelvesStart, products.length);
+        for (int i = 0; i < shelfCount; i++)
+            shelvesByProduct[next[productOfShelf[i]]++] = i;
+    }
+
+    /**
+     * Codes laid out row by row like on the machine's front: A1, A2, ... then B1, B2, ..., rows after Z are AA, AB...
+     */
+    public static List<String> gridCodes(int shelfCount, int columns) {
+        if (columns <= 0)
+            throw new IllegalArgumentException("Row needs at least one column");
+        List<String> result = new ArrayList<>(shelfCount);
+        for (int i = 0; i < shelfCount; i++)
+            result.add(rowName(i / columns) + (i % columns + 1));
+        return result;
+    }
+
+    public int getShelfCount() {
+        return shelfCodes.length;
+    }
+
+    /**
+     * @return shelf number or -1 if there's no such shelf
+     */
+    public int indexOfShelf(String code) {
+        Integer result = shelfByCode.get(code);
+        return result == null ? -1 : result;
+    }
+
+    public String getShelfCode(int shelfNumber) {
+        return shelfCodes[shelfNumber];
+    }
+
+    public long getPrice(int shelfNumber) {
+        return prices[shelfNumber];
+    }
+
+    public int getStock(int shelfNumber) {
+        return stock[shelfNumber];
+    }
+
+    public int getDistinctProductCount() {
+        return products.length;
+    }
+
+    /**
+     * @return null if no shelf carries the product
+     */
+    public ProductType getProduct(String sku) {
+        Integer index = productBySku.get(sku);
+        return index == null ? null : products[index];
+    }
+
+    /**
+     * @return numbers of the shelves carrying the product, empty if none
+     */
+    public int[] getShelvesOf(String sku) {
+        Integer index = productBySku.get(sku);
+        if (index == null)
+            return new int[0];
+        return Arrays.copyOfRange(shelvesByProduct, shelvesStart[index], shelvesStart[index + 1]);
+    }
+
+    public long getTotalStock(String sku) {
+        Integer index = productBySku.get(sku);
+        return index == null ? 0 : totalStock[index];
+    }
+
+    /**
+     * @return price of everything on the shelves
+     */
+    public Money getStockValue() {
+        long result = 0;
+        for (int i = 0; i < prices.length; i++)
+            result += prices[i] * stock[i];
+        return Money.ofCents(result);
+    }
+
+    public int getEmptyShelfCount() {
+        int result = 0;
+        for (int count : stock)
+            if (count == 0)
+                result++;
+        return result;
+    }
+
+    void productsTaken(int shelfNumber, int count) {
+        stock[shelfNumber] -= count;
+        totalStock[productOfShelf[shelfNumber]] -= count;
+    }
+
+    void productsAdded(int shelfNumber, int count) {
+        stock[shelfNumber] += count;
+        totalStock[productOfShelf[shelfNumber]] += count;
+    }
+
+    private static String rowName(int row) {
+        StringBuilder result = new StringBuilder();
+        for (int rest = row + 1; rest > 0; rest = (rest - 1) / 26)
+            result.append((char) ('A' + (rest - 1) % 26));
+        return result.reverse().toString();
+    }
+}
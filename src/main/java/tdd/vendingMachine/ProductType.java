@@ -1,21 +1,61 @@
 package tdd.vendingMachine;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 public class ProductType {
-    private BigDecimal price;
+    private Money price;
     private String name;
+    private String sku;
 
     public ProductType(BigDecimal price, String name) {
+        this(Money.fromBigDecimal(price), name);
+    }
+
+    public ProductType(Money price, String name) {
+        this(price, name, name);
+    }
+
+    /**
+     * @param sku stock keeping unit, identifies the product in a ProductCatalog
+     */
+    public ProductType(Money price, String name, String sku) {
         this.price = price;
         this.name = name;
+        this.sku = sku;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return product identifier, the name unless given explicitly
+     */
+    public String getSku() {
+        return sku;
+    }
+
     public BigDecimal getPrice() {
+        return price.toBigDecimal();
+    }
+
+    public Money getPriceMoney() {
         return price;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ProductType))
+            return false;
+        ProductType other = (ProductType) o;
+        return price.equals(other.price) && Objects.equals(name, other.name) && Objects.equals(sku, other.sku);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(price, name, sku);
+    }
 }
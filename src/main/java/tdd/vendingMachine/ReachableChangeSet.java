@@ -0,0 +1,98 @@
+package tdd.vendingMachine;
+
+/*
+ * Amounts up to a bound that the coins of a CoinInventory can pay exactly, kept as the number of ways to pay every
+ * multiple of the inventory's unit, so asking about an amount is a single array read.
+ * The numbers of ways are the coefficients of the product over denominations of 1 + z^d + ... + z^(c*d), which is
+ * (1 - z^((c+1)*d)) / (1 - z^d). Going from c to c' coins of a denomination only swaps the numerator: one pass
+ * dividing by 1 - z^((c+1)*d) (a running sum with that stride) and one pass multiplying by 1 - z^((c'+1)*d)
+ * (a shifted subtraction). Coins coming in and going out cost the same two passes, however many of them there are.
+ * The counts grow without limit, so they're kept modulo the prime 2^61 - 1 using additions only. An amount that can be
+ * paid in a multiple of that many ways reads as not payable, a chance of about 2^-61 per amount
+ */
+class ReachableChangeSet {
+    private static final long PRIME = (1L << 61) - 1;
+
+    private final long unit;
+    private final long bound;
+    private final long[] denominationUnits;
+    // Live counts of the inventory
+    private final int[] counts;
+    // Coins of every denomination the ways below are counted with, no more than fit under the bound
+    private final int[] included;
+    private final int bits;
+    private final long[] ways;
+
+    ReachableChangeSet(long[] denominations, int[] counts, long unit, long bound) {
+        this.unit = unit;
+        this.bound = bound;
+        this.counts = counts;
+        this.denominationUnits = new long[denominations.length];
+        for (int i = 0; i < denominations.length; i++)
+            denominationUnits[i] = denominations[i] / unit;
+        this.included = new int[denominations.length];
+        this.bits = Math.toIntExact(bound / unit + 1);
+        this.ways = new long[bits];
+        ways[0] = 1;
+        for (int i = 0; i < denominations.length; i++)
+            update(i);
+    }
+
+    long getBound() {
+        return bound;
+    }
+
+    /**
+     * @param cents at most the bound
+     */
+    boolean contains(long cents) {
+        assert cents <= bound;
+        if (cents < 0 || cents % unit != 0)
+            return false;
+        return ways[(int) (cents / unit)] != 0;
+    }
+
+    void coinAdded(int index) {
+        update(index);
+    }
+
+    void coinsAdded(int[] plan) {
+        changed(plan);
+    }
+
+    void coinsRemoved(int[] plan) {
+        changed(plan);
+    }
+
+    private void changed(int[] plan) {
+        for (int i = 0; i < plan.length; i++)
+            if (plan[i] != 0)
+                update(i);
+    }
+
+    private void update(int index) {
+        long denomination = denominationUnits[index];
+        if (denomination >= bits)
+            return;
+        // More coins than fit under the bound can't reach anything new
+        int target = (int) Math.min(counts[index], (bits - 1) / denomination);
+        if (target == included[index])
+            return;
+
+        long removed = (included[index] + 1) * denomination;
+        if (removed < bits) {
+            for (int amount = (int) removed; amount < bits; amount++) {
+                long sum = ways[amount] + ways[amount - (int) removed];
+                ways[amount] = sum >= PRIME ? sum - PRIME : sum;
+            }
+        }
+        long added = (target + 1) * denomination;
+        if (added < bits) {
+            for (int amount = bits - 1; amount >= added; amount--) {
+                long difference = ways[amount] - ways[amount - (int) added];
+                ways[amount] = difference < 0 ? difference + PRIME : difference;
+            }
+        }
+        included[index] = target;
+    }
+}
@@ -6,38 +6,60 @@ package tdd.vendingMachine;
  *  - I've probably wouldn't abstract so much stuff in real scenario because it would never be reused again,
  *    but this is a show-off for Object-Oriented programming
  *  - Decided to make the vending machine not support currencies at all because this is an exercise task.
- *    This allows for easier algorithms and allows me to use BigDecimal instead of abstracting money
+ *    This allows for easier algorithms and allows me to keep money as whole cents (see Money), BigDecimal is only
+ *    accepted and returned at the edges
  *  - I went a bit overboard on coin return strategy because it was a fun problem, a simpler algorithm would be enough
  *    for practical use-case but I wanted to solve it for a general one
  */
 import javafx.util.Pair;
 import tdd.vendingMachine.display.ConsoleVendingDisplay;
 import tdd.vendingMachine.display.VendingDisplay;
-import tdd.vendingMachine.strategy.DynamicReturnAmountStrategy;
+import tdd.vendingMachine.metrics.MachineMetrics;
+import tdd.vendingMachine.strategy.ArrayReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
 import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 public class VendingMachine {
     private VendingDisplay display;
     private ReturnAmountByDenominationsStrategy returnStrategy;
+    // Created on the first refund the return strategy runs out of budget for
+    private ReturnAmountByDenominationsStrategy refundStrategy;
+    private VendingMachineListener listener = VendingMachineListener.NONE;
+    // Null unless instrumentation is on, so the only cost otherwise is the null check
+    private MachineMetrics metrics;
 
     private List<VendingShelf> shelves;
-    private List<Pair<BigDecimal, Integer>> coins;
+    private CoinInventory coins;
+    // Reused for every change plan, so a purchase doesn't produce garbage
+    private int[] usedCoins;
     // This mimics real vending machines, from my own experience what I input was not always what I got back if I
     // cancelled
-    private BigDecimal userEnteredMoney = MoneyFactory.zero();
+    private Money userEnteredMoney = Money.ZERO;
+    // Coins of the current customer in escrow mode, kept out of coins until the sale. Null without escrow
+    private int[] escrow;
+
+    // Null until createCatalog
+    private ProductCatalog catalog;
+
+    // Both null unless setSpeculation
+    private Executor speculationExecutor;
+    private ReturnAmountByDenominationsStrategy speculationStrategy;
+    private ChangeSpeculation speculation;
 
     private VendingShelf selectedShelf;
     private Integer selectedShelfIndex;
-    private Queue<ProductType> droppedItems = new LinkedList<>();
-    private BigDecimal droppedChange = MoneyFactory.zero();
+    private Queue<ProductType> droppedItems = new ArrayDeque<>();
+    private Money droppedChange = Money.ZERO;
 
     public VendingMachine() {
         this(
             new ConsoleVendingDisplay(),
-            new DynamicReturnAmountStrategy(),
+            new GreedyReturnAmountStrategy(),
             Configuration.getDefaultShelfSet(),
             Configuration.getDefaultCoinSet()
         );
@@ -48,51 +70,357 @@ public class VendingMachine {
         ReturnAmountByDenominationsStrategy returnStrategy,
         List<VendingShelf> shelves,
         List<Pair<BigDecimal, Integer>> coins
+    ) {
+        this(display, returnStrategy, shelves, CoinInventory.of(coins));
+    }
+
+    public VendingMachine(
+        VendingDisplay display,
+        ReturnAmountByDenominationsStrategy returnStrategy,
+        List<VendingShelf> shelves,
+        CoinInventory coins
+    ) {
+        this(display, returnStrategy, shelves, coins, Money.ZERO, Collections.emptyList(), Money.ZERO);
+    }
+
+    /**
+     * Machine continuing from a saved state, see getCredit, getPendingItems and getPendingChange
+     *
+     * @param credit money inserted by the user and not spent yet, its coins are already in coins
+     */
+    public VendingMachine(
+        VendingDisplay display,
+        ReturnAmountByDenominationsStrategy returnStrategy,
+        List<VendingShelf> shelves,
+        CoinInventory coins,
+        Money credit,
+        Collection<ProductType> pendingItems,
+        Money pendingChange
     ) {
         this.display = display;
         this.returnStrategy = returnStrategy;
-        this.shelves = new ArrayList<>(shelves);
-        this.coins = new ArrayList<>(coins);
+        this.shelves = new ArrayList<>(shelves.size());
+        // Shelves count their stock in place, so every machine needs its own
+        for (VendingShelf shelf : shelves)
+            this.shelves.add(shelf.snapshot());
+        this.coins = coins.copy();
+        this.coins.trackReachable(getMaxPrice() + getMaxDenomination());
+        this.usedCoins = new int[coins.size()];
+        this.userEnteredMoney = credit;
+        this.droppedItems.addAll(pendingItems);
+        this.droppedChange = pendingChange;
+    }
+
+    public void setListener(VendingMachineListener listener) {
+        this.listener = listener;
+    }
+
+    public VendingMachineListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param metrics where purchases, cancels and stock-outs are recorded, null turns it off
+     */
+    public void setMetrics(MachineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * In escrow mode inserted coins are put aside until the sale, so a cancel or a failed sale gives back exactly those
+     * coins without calculating change. Can only be switched between customers
+     */
+    public void setEscrowMode(boolean enabled) {
+        if (!userEnteredMoney.equals(Money.ZERO))
+            throw new IllegalStateException("Can't switch escrow mode with money inserted");
+        escrow = enabled ? new int[coins.size()] : null;
+    }
+
+    /**
+     * Calculates the change for every coin that could finish the purchase in the background, as soon as a shelf is
+     * selected and after every coin that doesn't finish it, so the sale itself only looks the plan up
+     *
+     * @param executor where the plans are calculated, null turns it off
+     * @param strategy used only for these plans, it's called from the executor's threads
+     */
+    public void setSpeculation(Executor executor, ReturnAmountByDenominationsStrategy strategy) {
+        if (executor != null && strategy == null)
+            throw new IllegalArgumentException("Speculation needs its own strategy");
+        speculationExecutor = executor;
+        speculationStrategy = strategy;
+        dropSpeculation();
+    }
+
+    /**
+     * @return true if the same commands on the same machine always give the same sales and change, see
+     * ReturnAmountByDenominationsStrategy.isDeterministic
+     */
+    public boolean isDeterministic() {
+        return returnStrategy.isDeterministic() &&
+            (speculationStrategy == null || speculationStrategy.isDeterministic());
     }
 
     public void insertCoin(BigDecimal coin) {
-        if (addCoin(coin)) {
+        insertCoin(Money.fromBigDecimal(coin));
+    }
+
+    public void insertCoin(Money coin) {
+        if (acceptCoin(coin)) {
             userEnteredMoney = userEnteredMoney.add(coin);
             displayLeftCost();
             tryToBuyItem();
+            speculate();
         } else {
             droppedChange = droppedChange.add(coin);
         }
     }
 
+    /**
+     * Indexes the shelves by their codes and products by SKU, the machine keeps the catalog's stock up to date
+     *
+     * @param shelfCodes code of every shelf, e.g. from ProductCatalog.gridCodes
+     */
+    public ProductCatalog createCatalog(List<String> shelfCodes) {
+        catalog = new ProductCatalog(shelves, shelfCodes);
+        return catalog;
+    }
+
+    /**
+     * @param shelfCode code from the catalog, see createCatalog
+     */
+    public void selectShelf(String shelfCode) {
+        if (catalog == null)
+            throw new IllegalStateException("Shelves have no codes, create a catalog first");
+        int shelfNumber = catalog.indexOfShelf(shelfCode);
+        if (shelfNumber < 0)
+            throw new IllegalArgumentException("No shelf " + shelfCode);
+        selectShelf(shelfNumber);
+    }
+
     public void selectShelf(int shelfNumber) {
         selectedShelf = shelves.get(shelfNumber);
         selectedShelfIndex = shelfNumber;
 
-        if (selectedShelf.getProductCount() == 0)
+        if (selectedShelf.getProductCount() == 0) {
+            listener.onStockOut(shelfNumber);
+            if (metrics != null)
+                metrics.recordStockOut();
             display.displayString("Warning! Not enough " + selectedShelf.getName());
+        } else if (userEnteredMoney.equals(Money.ZERO) && !canChangeLargeCoins(selectedShelf.getPriceMoney())) {
+            display.displayString("Warning! Exact change needed for " + selectedShelf.getName());
+        }
 
         displayLeftCost();
         tryToBuyItem();
+        speculate();
+    }
+
+    /**
+     * Buys all products of the basket with the credit inserted so far, or nothing. Stock of every shelf is checked
+     * first, then change for the whole basket is calculated once. Selected shelf, if any, is forgotten
+     */
+    public BasketStatus buyBasket(List<BasketLine> basket) {
+        if (basket.isEmpty())
+            throw new IllegalArgumentException("Basket has to have at least one line");
+        selectedShelf = null;
+        selectedShelfIndex = null;
+
+        int[] quantities = new int[shelves.size()];
+        long total = 0;
+        for (BasketLine line : basket) {
+            VendingShelf shelf = shelves.get(line.getShelfNumber());
+            // Compared before adding, lines of the same shelf could overflow the sum
+            if (line.getQuantity() > shelf.getProductCount() - quantities[line.getShelfNumber()]) {
+                // A shelf with fewer products than asked for isn't out of stock
+                if (shelf.getProductCount() == 0) {
+                    listener.onStockOut(line.getShelfNumber());
+                    if (metrics != null)
+                        metrics.recordStockOut();
+                }
+                display.displayString("Warning! Not enough " + shelf.getName());
+                return BasketStatus.NOT_ENOUGH_PRODUCTS;
+            }
+            quantities[line.getShelfNumber()] += line.getQuantity();
+            try {
+                total = Math.addExact(total, Math.multiplyExact(shelf.getPriceMoney().getCents(), line.getQuantity()));
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Basket costs more than the machine can count", e);
+            }
+        }
+
+        Money price = Money.ofCents(total);
+        if (userEnteredMoney.compareTo(price) < 0) {
+            display.displayMoney(price.subtract(userEnteredMoney));
+            return BasketStatus.NOT_ENOUGH_MONEY;
+        }
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        Money change = userEnteredMoney.subtract(price);
+        ChangeStatus status = prepareChange(change);
+        int firstShelf = basket.get(0).getShelfNumber();
+        if (status == ChangeStatus.TIMED_OUT) {
+            listener.onChangeTimeout(firstShelf, change);
+            display.displayString("Warning! Change took too long to calculate! Not selling products");
+            returnUserMoney();
+            if (metrics != null)
+                metrics.recordChangeTimeout(System.nanoTime() - start);
+            return BasketStatus.CHANGE_TIMED_OUT;
+        } else if (status != ChangeStatus.FOUND) {
+            listener.onChangeFailure(firstShelf, change);
+            display.displayString("Warning! Can't return change with owned coins! Not selling products");
+            returnUserMoney();
+            if (metrics != null)
+                metrics.recordChangeFailure(System.nanoTime() - start);
+            return BasketStatus.NO_CHANGE;
+        }
+
+        commitChange(change);
+        for (BasketLine line : basket) {
+            ProductType product = shelves.get(line.getShelfNumber()).getProductType();
+            for (int i = 0; i < line.getQuantity(); i++) {
+                droppedItems.add(product);
+                listener.onSale(line.getShelfNumber(), product, product.getPriceMoney());
+            }
+        }
+        for (int i = 0; i < quantities.length; i++)
+            if (quantities[i] > 0)
+                removeProducts(i, quantities[i]);
+        clearMachineState();
+        display.displayString("Items bought, change returned");
+        if (metrics != null)
+            metrics.recordSale(System.nanoTime() - start);
+        return BasketStatus.SOLD;
+    }
+
+    /**
+     * Inserts the coins and buys the basket with them and any credit inserted before, displaying only the outcome
+     */
+    public BasketStatus buyBasket(List<BasketLine> basket, List<Money> coins) {
+        selectedShelf = null;
+        selectedShelfIndex = null;
+        for (Money coin : coins)
+            insertCoin(coin);
+        return buyBasket(basket);
     }
 
     public ProductType receiveItem() {
         return droppedItems.poll();
     }
 
+    /**
+     * @return every dropped item at once, in the order they were dropped
+     */
+    public List<ProductType> receiveItems() {
+        List<ProductType> result = new ArrayList<>(droppedItems);
+        droppedItems.clear();
+        return result;
+    }
+
     public BigDecimal receiveChange() {
-        BigDecimal result = droppedChange;
-        droppedChange = MoneyFactory.zero();
+        return receiveChangeMoney().toBigDecimal();
+    }
+
+    public Money receiveChangeMoney() {
+        Money result = droppedChange;
+        droppedChange = Money.ZERO;
         return result;
     }
 
     public void cancelOrder() {
-        List<Integer> usedCoins = returnStrategy
-            .execute(coins, userEnteredMoney)
-            .orElseThrow(() -> new AssertionError("The machine must always be able to return the money inserted by user"));
-        removeCoins(usedCoins);
+        long start = metrics != null ? System.nanoTime() : 0;
+        returnUserMoney();
+        if (metrics != null)
+            metrics.recordCancel(System.nanoTime() - start);
+    }
+
+    public void restockShelf(int shelfNumber, int count) {
+        shelves.get(shelfNumber).restock(count);
+        if (catalog != null)
+            catalog.productsAdded(shelfNumber, count);
+    }
+
+    public int getShelfCount() {
+        return shelves.size();
+    }
+
+    public int getProductCount(int shelfNumber) {
+        return shelves.get(shelfNumber).getProductCount();
+    }
+
+    /**
+     * @return copies of the shelves with their current stock, for reporting
+     */
+    public List<VendingShelf> getShelfSnapshots() {
+        List<VendingShelf> result = new ArrayList<>(shelves.size());
+        for (VendingShelf shelf : shelves)
+            result.add(shelf.snapshot());
+        return result;
+    }
+
+    public ProductType getProductType(int shelfNumber) {
+        return shelves.get(shelfNumber).getProductType();
+    }
+
+    public Money getCredit() {
+        return userEnteredMoney;
+    }
+
+    /**
+     * @return items dropped and not received yet, in the order they will be received
+     */
+    public List<ProductType> getPendingItems() {
+        return new ArrayList<>(droppedItems);
+    }
+
+    public int getPendingItemCount() {
+        return droppedItems.size();
+    }
+
+    /**
+     * @return change dropped and not received yet, the machine keeps it
+     */
+    public Money getPendingChange() {
+        return droppedChange;
+    }
+
+    /**
+     * @return copy of the coins currently in the machine
+     */
+    public CoinInventory getCoins() {
+        CoinInventory result = coins.copy();
+        if (escrow != null)
+            result.addAll(escrow);
+        return result;
+    }
+
+    private boolean acceptCoin(Money coin) {
+        if (escrow == null)
+            return coins.add(coin);
+        int index = coins.indexOf(coin.getCents());
+        if (index < 0)
+            return false;
+        escrow[index]++;
+        return true;
+    }
+
+    private void returnUserMoney() {
+        if (escrow != null) {
+            Arrays.fill(escrow, 0);
+        } else {
+            ChangeStatus status = findChange(userEnteredMoney);
+            // The money has to go back however long it takes
+            if (status == ChangeStatus.TIMED_OUT) {
+                if (refundStrategy == null)
+                    refundStrategy = new ArrayReturnAmountStrategy();
+                status = coins.findChange(refundStrategy, userEnteredMoney.getCents(), usedCoins);
+            }
+            if (status != ChangeStatus.FOUND)
+                throw new AssertionError("The machine must always be able to return the money inserted by user");
+            coins.removeAll(usedCoins);
+        }
 
         droppedChange = droppedChange.add(userEnteredMoney);
+        listener.onCancel(userEnteredMoney);
         clearMachineState();
         display.displayString("Order canceled, money returned");
     }
@@ -100,20 +428,32 @@ public class VendingMachine {
     private void tryToBuyItem() {
         if (selectedShelf != null &&
             selectedShelf.getProductCount() > 0 &&
-            userEnteredMoney.compareTo(selectedShelf.getProductType().getPrice()) >= 0) {
-            BigDecimal change = userEnteredMoney.subtract(selectedShelf.getProductType().getPrice());
-            Optional<List<Integer>> changeCoinsOpt = returnStrategy.execute(coins, change);
-            if (!changeCoinsOpt.isPresent()) {
+            userEnteredMoney.compareTo(selectedShelf.getPriceMoney()) >= 0) {
+            long start = metrics != null ? System.nanoTime() : 0;
+            Money change = userEnteredMoney.subtract(selectedShelf.getPriceMoney());
+            ChangeStatus status = prepareChange(change);
+            if (status == ChangeStatus.TIMED_OUT) {
+                listener.onChangeTimeout(selectedShelfIndex, change);
+                display.displayString("Warning! Change took too long to calculate! Not selling product");
+                returnUserMoney();
+                if (metrics != null)
+                    metrics.recordChangeTimeout(System.nanoTime() - start);
+            } else if (status != ChangeStatus.FOUND) {
+                listener.onChangeFailure(selectedShelfIndex, change);
                 display.displayString("Warning! Can't return change with owned coins! Not selling product");
-                cancelOrder();
+                returnUserMoney();
+                if (metrics != null)
+                    metrics.recordChangeFailure(System.nanoTime() - start);
             } else {
                 // Simplification, removing unreceived item if not received
                 droppedItems.add(shelves.get(selectedShelfIndex).getProductType());
-                droppedChange = droppedChange.add(change);
-                removeCoins(changeCoinsOpt.get());
-                removeProduct(selectedShelfIndex);
+                commitChange(change);
+                removeProducts(selectedShelfIndex, 1);
+                listener.onSale(selectedShelfIndex, selectedShelf.getProductType(), selectedShelf.getPriceMoney());
                 clearMachineState();
                 display.displayString("Item bought, change returned");
+                if (metrics != null)
+                    metrics.recordSale(System.nanoTime() - start);
             }
         }
     }
@@ -123,40 +463,100 @@ public class VendingMachine {
             display
                 .displayMoney(
                     selectedShelf
-                        .getProductType()
-                        .getPrice()
+                        .getPriceMoney()
                         .subtract(userEnteredMoney)
                 );
     }
 
-    private boolean addCoin(BigDecimal coin) {
-        for (int i = 0; i < coins.size(); i++) {
-            Pair<BigDecimal, Integer> pair = coins.get(i);
-            if (pair.getKey().equals(coin)) {
-                coins.set(i, new Pair<>(coin, pair.getValue() + 1));
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Finds coins for the change of a sale, leaves them in usedCoins for commitChange
+     */
+    private ChangeStatus prepareChange(Money change) {
+        // Escrowed coins can be given as change too, so they join the coins for the time of the sale
+        if (escrow != null)
+            coins.addAll(escrow);
+        ChangeStatus status = speculation != null ? speculation.lookup(coins, change.getCents(), usedCoins) : null;
+        if (status == null)
+            status = findChange(change);
+        if (status != ChangeStatus.FOUND && escrow != null)
+            coins.removeAll(escrow);
+        return status;
     }
 
-    private void removeCoins(List<Integer> usedCoins) {
-        assert usedCoins.size() == coins.size();
+    private void commitChange(Money change) {
+        droppedChange = droppedChange.add(change);
+        coins.removeAll(usedCoins);
+        if (escrow != null)
+            Arrays.fill(escrow, 0);
+    }
+
+    private ChangeStatus findChange(Money amount) {
+        if (!coins.mayPay(amount.getCents()))
+            return ChangeStatus.IMPOSSIBLE;
+        return coins.findChange(returnStrategy, amount.getCents(), usedCoins);
+    }
+
+    /**
+     * @return false if paying with a single coin larger than the price leaves change the machine can't give
+     */
+    private boolean canChangeLargeCoins(Money price) {
         for (int i = 0; i < coins.size(); i++) {
-            Pair<BigDecimal, Integer> pair = coins.get(i);
-            coins.set(i, new Pair<>(pair.getKey(), pair.getValue() - usedCoins.get(i)));
+            long change = coins.getDenomination(i) - price.getCents();
+            if (change > 0 && !coins.mayPay(change))
+                return false;
         }
+        return true;
+    }
+
+    private long getMaxPrice() {
+        long result = 0;
+        for (VendingShelf shelf : shelves)
+            result = Math.max(result, shelf.getPriceMoney().getCents());
+        return result;
+    }
+
+    private long getMaxDenomination() {
+        long result = 0;
+        for (int i = 0; i < coins.size(); i++)
+            result = Math.max(result, coins.getDenomination(i));
+        return result;
     }
 
-    private void removeProduct(int shelfIndex) {
-        VendingShelf shelf = shelves.get(shelfIndex);
-        assert shelf.getProductCount() > 0;
-        shelves.set(shelfIndex, new VendingShelf(shelf.getProductType(), shelf.getProductCount() - 1));
+    private void removeProducts(int shelfIndex, int count) {
+        boolean taken = shelves.get(shelfIndex).tryTakeProducts(count);
+        assert taken;
+        if (catalog != null)
+            catalog.productsTaken(shelfIndex, count);
+    }
+
+    /**
+     * Starts calculating the plans for the coins that could finish the purchase of the selected shelf
+     */
+    private void speculate() {
+        dropSpeculation();
+        if (speculationExecutor == null || selectedShelf == null || selectedShelf.getProductCount() == 0)
+            return;
+        speculation = new ChangeSpeculation(
+            coins,
+            escrow,
+            selectedShelf.getPriceMoney().getCents(),
+            userEnteredMoney.getCents(),
+            speculationStrategy,
+            speculationExecutor
+        );
+    }
+
+    private void dropSpeculation() {
+        if (speculation != null) {
+            speculation.cancel();
+            speculation = null;
+        }
     }
 
     private void clearMachineState() {
-        userEnteredMoney = MoneyFactory.zero();
+        userEnteredMoney = Money.ZERO;
         selectedShelf = null;
         selectedShelfIndex = null;
+        dropSpeculation();
     }
 }
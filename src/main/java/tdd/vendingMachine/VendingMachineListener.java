@@ -0,0 +1,38 @@
+package tdd.vendingMachine;
+
+/**
+ * Gets notified about what happens in the machine, called synchronously from the machine's thread
+ */
+public interface VendingMachineListener {
+    VendingMachineListener NONE = new VendingMachineListener() {
+    };
+
+    default void onSale(int shelfNumber, ProductType product, Money price) {
+    }
+
+    /**
+     * Also called when the machine cancels the order by itself because it can't return change
+     */
+    default void onCancel(Money returned) {
+    }
+
+    /**
+     * A purchase ended without a sale because change couldn't be paid, for a basket the shelf is the one of its first
+     * line
+     */
+    default void onChangeFailure(int shelfNumber, Money change) {
+    }
+
+    /**
+     * Change strategy ran out of its budget before finding the change, the order was canceled. For a basket the shelf
+     * is the one of its first line
+     */
+    default void onChangeTimeout(int shelfNumber, Money change) {
+    }
+
+    /**
+     * Customer selected an empty shelf, or a basket asked for products of one
+     */
+    default void onStockOut(int shelfNumber) {
+    }
+}
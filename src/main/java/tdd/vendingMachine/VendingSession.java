@@ -0,0 +1,129 @@
+package tdd.vendingMachine;
+
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/*
+ * One customer at a ConcurrentVendingMachine. Works the same way as VendingMachine from the customer's point of view,
+ * but a session is meant to be used by one thread at a time, while many sessions can run in parallel.
+ * Inserted coins stay in the session until the sale, so cancelling simply gives them back
+ */
+public class VendingSession {
+    private final ConcurrentVendingMachine machine;
+    private final VendingDisplay display;
+    private final ReturnAmountByDenominationsStrategy returnStrategy;
+
+    private final int[] insertedCoins;
+    private final int[] countsBuffer;
+    private final int[] usedCoins;
+    private Money userEnteredMoney = Money.ZERO;
+
+    private Integer selectedShelfIndex;
+    private Queue<ProductType> droppedItems = new LinkedList<>();
+    private Money droppedChange = Money.ZERO;
+
+    VendingSession(
+        ConcurrentVendingMachine machine,
+        VendingDisplay display,
+        ReturnAmountByDenominationsStrategy returnStrategy
+    ) {
+        this.machine = machine;
+        this.display = display;
+        this.returnStrategy = returnStrategy;
+        this.insertedCoins = new int[machine.getDenominationCount()];
+        this.countsBuffer = new int[machine.getDenominationCount()];
+        this.usedCoins = new int[machine.getDenominationCount()];
+    }
+
+    public void insertCoin(BigDecimal coin) {
+        insertCoin(Money.fromBigDecimal(coin));
+    }
+
+    public void insertCoin(Money coin) {
+        int index = machine.indexOfCoin(coin);
+        if (index >= 0) {
+            insertedCoins[index]++;
+            userEnteredMoney = userEnteredMoney.add(coin);
+            displayLeftCost();
+            tryToBuyItem();
+        } else {
+            droppedChange = droppedChange.add(coin);
+        }
+    }
+
+    public void selectShelf(int shelfNumber) {
+        ProductType product = machine.getProductType(shelfNumber);
+        selectedShelfIndex = shelfNumber;
+
+        if (machine.getProductCount(shelfNumber) == 0)
+            display.displayString("Warning! Not enough " + product.getName());
+
+        displayLeftCost();
+        tryToBuyItem();
+    }
+
+    public ProductType receiveItem() {
+        return droppedItems.poll();
+    }
+
+    public BigDecimal receiveChange() {
+        return receiveChangeMoney().toBigDecimal();
+    }
+
+    public Money receiveChangeMoney() {
+        Money result = droppedChange;
+        droppedChange = Money.ZERO;
+        return result;
+    }
+
+    public void cancelOrder() {
+        droppedChange = droppedChange.add(userEnteredMoney);
+        clearSessionState();
+        display.displayString("Order canceled, money returned");
+    }
+
+    private void tryToBuyItem() {
+        if (selectedShelfIndex == null)
+            return;
+        ProductType product = machine.getProductType(selectedShelfIndex);
+        if (userEnteredMoney.compareTo(product.getPriceMoney()) < 0 || !machine.takeProduct(selectedShelfIndex))
+            return;
+
+        Money change = userEnteredMoney.subtract(product.getPriceMoney());
+        ChangeStatus status = machine.exchange(insertedCoins, change.getCents(), returnStrategy, countsBuffer, usedCoins);
+        if (status != ChangeStatus.FOUND) {
+            machine.returnProduct(selectedShelfIndex);
+            if (status == ChangeStatus.TIMED_OUT)
+                display.displayString("Warning! Change took too long to calculate! Not selling product");
+            else
+                display.displayString("Warning! Can't return change with owned coins! Not selling product");
+            cancelOrder();
+        } else {
+            droppedItems.add(product);
+            droppedChange = droppedChange.add(change);
+            clearSessionState();
+            display.displayString("Item bought, change returned");
+        }
+    }
+
+    private void displayLeftCost() {
+        if (selectedShelfIndex != null)
+            display.displayMoney(
+                machine.getProductType(selectedShelfIndex)
+                    .getPriceMoney()
+                    .subtract(userEnteredMoney)
+            );
+    }
+
+    private void clearSessionState() {
+        userEnteredMoney = Money.ZERO;
+        selectedShelfIndex = null;
+        for (int i = 0; i < insertedCoins.length; i++)
+            insertedCoins[i] = 0;
+    }
+}
@@ -1,12 +1,23 @@
 package tdd.vendingMachine;
 
 import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+/*
+ * Shelf with its stock counter. The counter is changed in place with compare-and-set, so taking a product never
+ * allocates, never oversells when many buyers take from the same shelf, and buyers of different shelves don't touch
+ * any common structure
+ */
 public class VendingShelf {
-    private ProductType productType;
-    private int productCount;
+    private static final AtomicIntegerFieldUpdater<VendingShelf> PRODUCT_COUNT =
+        AtomicIntegerFieldUpdater.newUpdater(VendingShelf.class, "productCount");
+
+    private final ProductType productType;
+    private volatile int productCount;
 
     public VendingShelf(ProductType productType, int productCount) {
+        if (productCount < 0)
+            throw new IllegalArgumentException("Product count can't be negative: " + productCount);
         this.productType = productType;
         this.productCount = productCount;
     }
@@ -26,4 +37,43 @@ public class VendingShelf {
     public BigDecimal getPrice() {
         return getProductType().getPrice();
     }
+
+    public Money getPriceMoney() {
+        return getProductType().getPriceMoney();
+    }
+
+    /**
+     * @return false if the shelf is empty
+     */
+    public boolean tryTakeProduct() {
+        return tryTakeProducts(1);
+    }
+
+    /**
+     * Takes all the products or none
+     *
+     * @return false if the shelf has less than count products
+     */
+    public boolean tryTakeProducts(int count) {
+        while (true) {
+            int current = productCount;
+            if (current < count)
+                return false;
+            if (PRODUCT_COUNT.compareAndSet(this, current, current - count))
+                return true;
+        }
+    }
+
+    public void restock(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Can't restock negative number of products");
+        PRODUCT_COUNT.addAndGet(this, count);
+    }
+
+    /**
+     * @return shelf with the current stock, not affected by later sales and restocks
+     */
+    public VendingShelf snapshot() {
+        return new VendingShelf(productType, productCount);
+    }
 }
@@ -0,0 +1,321 @@
+package tdd.vendingMachine.display;
+
+import tdd.vendingMachine.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.text.DecimalFormatSymbols;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Display writing the same lines as ConsoleVendingDisplay, but from a background thread, so the machine never waits
+ * for the console.
+ * Messages go into a ring buffer allocated up front: an amount is stored as cents, a text as a reference to the string.
+ * The writer thread takes everything waiting at once, formats it into one reused char buffer (cents are turned into
+ * digits by hand, no DecimalFormat) and writes and flushes the whole batch together.
+ * The lock is only held to copy a few slots, never during formatting or I/O
+ */
+public class AsyncVendingDisplay implements VendingDisplay, Closeable {
+    private static final String PREFIX = "[display] ";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final OverflowPolicy policy;
+    private final char decimalSeparator;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition written = lock.newCondition();
+
+    // Ring buffer, a slot holds either an amount (text == null) or a text
+    private final int mask;
+    private final long[] amounts;
+    private final String[] texts;
+    private long head;
+    private long tail;
+    private long writtenUpTo;
+    private long dropped;
+    private boolean closed;
+
+    // Owned by the writer thread
+    private final long[] batchAmounts;
+    private final String[] batchTexts;
+    private char[] line = new char[256];
+
+    private final Thread writer;
+
+    public AsyncVendingDisplay() {
+        this(new OutputStreamWriter(System.out), 1024, OverflowPolicy.COALESCE);
+    }
+
+    /**
+     * @param capacity how many messages can wait, rounded up to a power of two
+     */
+    public AsyncVendingDisplay(Writer out, int capacity, OverflowPolicy policy) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity has to be between 1 and 2^30");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        this.out = out;
+        this.policy = policy;
+        this.decimalSeparator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+        this.mask = size - 1;
+        this.amounts = new long[size];
+        this.texts = new String[size];
+        this.batchAmounts = new long[size];
+        this.batchTexts = new String[size];
+
+        this.writer = new Thread(this::writeLoop, "vending-display");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void displayMoney(BigDecimal money) {
+        displayMoney(Money.fromBigDecimal(money));
+    }
+
+    @Override
+    public void displayMoney(Money money) {
+        enqueue(money.getCents(), null);
+    }
+
+    @Override
+    public void displayString(String string) {
+        enqueue(0, string);
+    }
+
+    /**
+     * Waits until everything displayed so far is written
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = tail;
+            while (writtenUpTo < target && writer.isAlive())
+                written.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return messages lost to the overflow policy
+     */
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes what's waiting and stops the writer thread, the underlying writer is left open
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void enqueue(long amount, String text) {
+        lock.lock();
+        try {
+            if (closed)
+                throw new IllegalStateException("Display is closed");
+
+            if (tail - head > mask) {
+                switch (policy) {
+                    case DROP_OLDEST:
+                        texts[(int) head & mask] = null;
+                        head++;
+                        dropped++;
+                        break;
+                    case COALESCE:
+                        // Amounts are only states on the way, texts like the outcome of a purchase must be seen
+                        if (text == null && texts[(int) (tail - 1) & mask] == null) {
+                            tail--;
+                            dropped++;
+                        } else if (dropOldestAmount()) {
+                            dropped++;
+                        } else {
+                            awaitNotFull();
+                        }
+                        break;
+                    case BLOCK:
+                        awaitNotFull();
+                        break;
+                    default:
+                        throw new AssertionError("Unhandled policy " + policy);
+                }
+            }
+
+            int slot = (int) tail & mask;
+            amounts[slot] = amount;
+            texts[slot] = text;
+            tail++;
+            // Writer only sleeps on an empty buffer
+            if (tail - head == 1)
+                notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitNotFull() {
+        while (tail - head > mask && !closed)
+            notFull.awaitUninterruptibly();
+        if (closed)
+            throw new IllegalStateException("Display is closed");
+    }
+
+    /**
+     * Removes the oldest waiting amount, moving the messages before it up by one
+     *
+     * @return false if only texts are waiting
+     */
+    private boolean dropOldestAmount() {
+        for (long sequence = head; sequence < tail; sequence++) {
+            if (texts[(int) sequence & mask] != null)
+                continue;
+            for (long moved = sequence; moved > head; moved--) {
+                amounts[(int) moved & mask] = amounts[(int) (moved - 1) & mask];
+                texts[(int) moved & mask] = texts[(int) (moved - 1) & mask];
+            }
+            texts[(int) head & mask] = null;
+            head++;
+            return true;
+        }
+        return false;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            int count;
+            long batchEnd;
+            lock.lock();
+            try {
+                while (head == tail && !closed)
+                    notEmpty.awaitUninterruptibly();
+                if (head == tail) {
+                    written.signalAll();
+                    return;
+                }
+
+                count = (int) (tail - head);
+                for (int i = 0; i < count; i++) {
+                    int slot = (int) (head + i) & mask;
+                    batchAmounts[i] = amounts[slot];
+                    batchTexts[i] = texts[slot];
+                    texts[slot] = null;
+                }
+                head = tail;
+                batchEnd = tail;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            writeBatch(count);
+
+            lock.lock();
+            try {
+                writtenUpTo = batchEnd;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeBatch(int count) {
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            String text = batchTexts[i];
+            batchTexts[i] = null;
+            length = text == null ? appendMoney(length, batchAmounts[i]) : appendText(length, text);
+        }
+        try {
+            out.write(line, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            // Same as System.out, a broken display doesn't stop the machine
+        }
+    }
+
+    private int appendText(int length, String text) {
+        ensureCapacity(length + PREFIX.length() + text.length() + LINE_SEPARATOR.length());
+        length = append(length, PREFIX);
+        length = append(length, text);
+        return append(length, LINE_SEPARATOR);
+    }
+
+    /**
+     * Same as DecimalFormat("0.00"), at least one integer digit and always two fraction digits
+     */
+    private int appendMoney(int length, long cents) {
+        // Sign, 19 digits, separator
+        ensureCapacity(length + PREFIX.length() + 21 + LINE_SEPARATOR.length());
+        length = append(length, PREFIX);
+        if (cents < 0)
+            line[length++] = '-';
+
+        // Negative values reach Long.MIN_VALUE, positive ones don't
+        long negative = cents < 0 ? cents : -cents;
+        long whole = negative / 100;
+        int fraction = (int) -(negative % 100);
+
+        int digits = 1;
+        for (long rest = whole / 10; rest != 0; rest /= 10)
+            digits++;
+        for (int i = length + digits - 1; i >= length; i--) {
+            line[i] = (char) ('0' - whole % 10);
+            whole /= 10;
+        }
+        length += digits;
+
+        line[length++] = decimalSeparator;
+        line[length++] = (char) ('0' + fraction / 10);
+        line[length++] = (char) ('0' + fraction % 10);
+        return append(length, LINE_SEPARATOR);
+    }
+
+    private int append(int length, String text) {
+        text.getChars(0, text.length(), line, length);
+        return length + text.length();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > line.length) {
+            char[] bigger = new char[Math.max(capacity, line.length * 2)];
+            System.arraycopy(line, 0, bigger, 0, line.length);
+            line = bigger;
+        }
+    }
+}
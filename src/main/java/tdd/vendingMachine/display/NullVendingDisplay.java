@@ -0,0 +1,22 @@
+package tdd.vendingMachine.display;
+
+import tdd.vendingMachine.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Display nobody looks at, for simulations and benchmarks
+ */
+public class NullVendingDisplay implements VendingDisplay {
+    @Override
+    public void displayMoney(BigDecimal money) {
+    }
+
+    @Override
+    public void displayMoney(Money money) {
+    }
+
+    @Override
+    public void displayString(String string) {
+    }
+}
@@ -0,0 +1,20 @@
+package tdd.vendingMachine.display;
+
+/**
+ * What AsyncVendingDisplay does with a new message when its buffer is full
+ */
+public enum OverflowPolicy {
+    /**
+     * Forget the oldest waiting message
+     */
+    DROP_OLDEST,
+    /**
+     * An amount replaces the newest waiting message if that's an amount too, a display only has to end up showing the
+     * latest state. Otherwise the oldest waiting amount is forgotten, and texts wait for room when there's none
+     */
+    COALESCE,
+    /**
+     * Wait until the display catches up
+     */
+    BLOCK
+}
@@ -1,8 +1,17 @@
 package tdd.vendingMachine.display;
 
+import tdd.vendingMachine.Money;
+
 import java.math.BigDecimal;
 
 public interface VendingDisplay {
     void displayMoney(BigDecimal money);
     void displayString(String string);
+
+    /**
+     * Called by the machine, displays that can show cents directly override it to skip BigDecimal
+     */
+    default void displayMoney(Money money) {
+        displayMoney(money.toBigDecimal());
+    }
 }
@@ -0,0 +1,267 @@
+package tdd.vendingMachine.fleet;
+
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingShelf;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * State of a whole fleet of machines outside of the Java heap, for modelling millions of machines in one process.
+ * Every machine of the fleet has the same products and the same coin denominations, so a machine is only its
+ * numbers, kept in a fixed size record:
+ *
+ *   credit (8), pending change (8), selected shelf (4), reserved (4),
+ *   stock of every shelf (4 each), items waiting in the tray from every shelf (4 each), coins of every denomination
+ *   (4 each), padded to 8 bytes
+ *
+ * That's 88 bytes with the default shelves and coins, so a million machines take 88 MB and the garbage collector
+ * never sees them. Records live in direct buffers, or in a memory mapped file that keeps the fleet between runs,
+ * split into chunks of whole records below 2 GB each. Machines are used through a MachineView, a flyweight moved
+ * from record to record.
+ *
+ * A file starts with a header describing the records, checked when the file is opened again, so a fleet can't be
+ * read with other shelves or coins even when the records happen to be the same size:
+ *
+ *   int magic, int version, int record size, int machine count, int shelf count, int denomination count,
+ *   long price of every shelf, long value of every denomination, padded to 8 bytes
+ *
+ * The header is written after the records are filled, a file torn while being created isn't taken for a fleet
+ */
+public class FleetStore implements Closeable {
+    static final int CREDIT = 0;
+    static final int PENDING_CHANGE = 8;
+    static final int SELECTED_SHELF = 16;
+    static final int SHELVES = 24;
+    static final int NO_SHELF = -1;
+
+    static final int MAGIC = 0x564D4631;
+    static final int VERSION = 1;
+
+    private static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private final List<ProductType> products;
+    private final long[] prices;
+    private final CoinInventory denominations;
+    private final int machineCount;
+    private final int recordSize;
+    private final int recordsPerChunk;
+    private final ByteBuffer[] chunks;
+    private final FileChannel file;
+    // Bytes before the first record in the file
+    private final int headerSize;
+
+    private FleetStore(List<VendingShelf> shelves, CoinInventory coins, int machineCount, FileChannel file) {
+        if (machineCount < 0)
+            throw new IllegalArgumentException("Machine count can't be negative: " + machineCount);
+        this.products = new ArrayList<>(shelves.size());
+        this.prices = new long[shelves.size()];
+        for (int i = 0; i < shelves.size(); i++) {
+            products.add(shelves.get(i).getProductType());
+            prices[i] = shelves.get(i).getPriceMoney().getCents();
+        }
+        this.denominations = new CoinInventory(coins.getDenominations(), new int[coins.size()]);
+        this.machineCount = machineCount;
+        int size = SHELVES + 4 * (2 * shelves.size() + coins.size());
+        this.recordSize = (size + 7) & ~7;
+        this.recordsPerChunk = MAX_CHUNK_SIZE / recordSize;
+        this.chunks = new ByteBuffer[(machineCount + recordsPerChunk - 1) / recordsPerChunk];
+        this.file = file;
+        this.headerSize = file == null ? 0 : (24 + 8 * (prices.length + coins.size()) + 7) & ~7;
+    }
+
+    /**
+     * Fleet in direct buffers, every machine starting with the shelves and coins given
+     */
+    public static FleetStore allocate(List<VendingShelf> shelves, CoinInventory coins, int machineCount) {
+        FleetStore store = new FleetStore(shelves, coins, machineCount, null);
+        for (int i = 0; i < store.chunks.length; i++)
+            store.chunks[i] = ByteBuffer.allocateDirect(store.chunkSize(i));
+        store.reset(shelves, coins);
+        return store;
+    }
+
+    /**
+     * Fleet in a memory mapped file. A new file starts every machine with the shelves and coins given, an existing
+     * one keeps its machines, and has to be opened with the same prices, denominations and machine count
+     *
+     * @throws IOException also when the file isn't a fleet or was created for another one
+     */
+    public static FleetStore map(
+        Path path,
+        List<VendingShelf> shelves,
+        CoinInventory coins,
+        int machineCount
+    ) throws IOException {
+        FileChannel file = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        try {
+            FleetStore store = new FleetStore(shelves, coins, machineCount, file);
+            ByteBuffer header = store.header();
+            long size = store.headerSize + (long) store.recordSize * machineCount;
+            boolean created = file.size() == 0;
+            if (!created) {
+                ByteBuffer existing = ByteBuffer.allocate(store.headerSize);
+                int read = 0;
+                while (existing.hasRemaining() && read >= 0)
+                    read = file.read(existing, existing.position());
+                existing.flip();
+                if (existing.remaining() < 8 || existing.getInt(0) != MAGIC)
+                    throw new IOException("Not a fleet file: " + path);
+                if (existing.getInt(4) != VERSION)
+                    throw new IOException("Unsupported fleet file version " + existing.getInt(4) + ": " + path);
+                if (!existing.equals(header) || file.size() != size)
+                    throw new IOException("Fleet file " + path + " was created for other machines");
+            }
+
+            long position = store.headerSize;
+            for (int i = 0; i < store.chunks.length; i++) {
+                store.chunks[i] = file.map(FileChannel.MapMode.READ_WRITE, position, store.chunkSize(i));
+                position += store.chunkSize(i);
+            }
+            if (created) {
+                store.reset(shelves, coins);
+                for (ByteBuffer chunk : store.chunks)
+                    ((MappedByteBuffer) chunk).force();
+                while (header.hasRemaining())
+                    file.write(header, header.position());
+                file.force(true);
+            }
+            return store;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param display where the messages of whichever machine the view is on go
+     * @param strategy used for the change of every machine the view is on
+     */
+    public MachineView view(VendingDisplay display, ReturnAmountByDenominationsStrategy strategy) {
+        return new MachineView(this, display, strategy);
+    }
+
+    public int getMachineCount() {
+        return machineCount;
+    }
+
+    /**
+     * @return bytes taken by a single machine
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Writes a mapped fleet to its file, for an allocated one there's nothing to do
+     */
+    @Override
+    public void close() throws IOException {
+        if (file == null)
+            return;
+        for (ByteBuffer chunk : chunks)
+            ((MappedByteBuffer) chunk).force();
+        file.close();
+    }
+
+    int getShelfCount() {
+        return prices.length;
+    }
+
+    ProductType getProduct(int shelfNumber) {
+        return products.get(shelfNumber);
+    }
+
+    long getPrice(int shelfNumber) {
+        return prices[shelfNumber];
+    }
+
+    /**
+     * Denominations with no coins, only to find a coin's index
+     */
+    CoinInventory getDenominations() {
+        return denominations;
+    }
+
+    int stockOffset(int shelfNumber) {
+        return SHELVES + 4 * shelfNumber;
+    }
+
+    int trayOffset(int shelfNumber) {
+        return SHELVES + 4 * (prices.length + shelfNumber);
+    }
+
+    int coinOffset(int coinIndex) {
+        return SHELVES + 4 * (2 * prices.length + coinIndex);
+    }
+
+    ByteBuffer chunkOf(int machine) {
+        if (machine < 0 || machine >= machineCount)
+            throw new IndexOutOfBoundsException("No machine " + machine + " in a fleet of " + machineCount);
+        return chunks[machine / recordsPerChunk];
+    }
+
+    int offsetOf(int machine) {
+        return machine % recordsPerChunk * recordSize;
+    }
+
+    /**
+     * @return header of the file this fleet is kept in
+     */
+    private ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(recordSize);
+        header.putInt(machineCount);
+        header.putInt(prices.length);
+        header.putInt(denominations.size());
+        for (long price : prices)
+            header.putLong(price);
+        for (long denomination : denominations.getDenominations())
+            header.putLong(denomination);
+        header.clear();
+        return header;
+    }
+
+    private int chunkSize(int chunk) {
+        int records = Math.min(recordsPerChunk, machineCount - chunk * recordsPerChunk);
+        return records * recordSize;
+    }
+
+    private void reset(List<VendingShelf> shelves, CoinInventory coins) {
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putLong(CREDIT, 0);
+        record.putLong(PENDING_CHANGE, 0);
+        record.putInt(SELECTED_SHELF, NO_SHELF);
+        for (int i = 0; i < shelves.size(); i++) {
+            record.putInt(stockOffset(i), shelves.get(i).getProductCount());
+            record.putInt(trayOffset(i), 0);
+        }
+        for (int i = 0; i < coins.size(); i++)
+            record.putInt(coinOffset(i), coins.getCount(i));
+
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer target = chunk.duplicate();
+            while (target.hasRemaining()) {
+                record.clear();
+                target.put(record);
+            }
+        }
+    }
+}
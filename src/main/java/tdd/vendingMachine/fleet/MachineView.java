@@ -0,0 +1,255 @@
+package tdd.vendingMachine.fleet;
+
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.ArrayReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.nio.ByteBuffer;
+
+/*
+ * One machine of a FleetStore at a time, with the commands and queries of VendingMachine working directly on the
+ * machine's record. Moving the view to another machine only changes where it reads and writes, so a single view and
+ * its scratch arrays serve the whole fleet without allocating per machine.
+ * Differences from VendingMachine, which keeps richer state than a record can:
+ *  - Items waiting in the tray are counted per shelf, receiveItem gives them from the lowest shelf first instead of
+ *    in the order they were bought
+ *  - No escrow, listener, metrics, catalog, change speculation or exact change warning
+ * Like machines, a view and the machines it's moved to are used from a single thread
+ */
+public class MachineView {
+    private final FleetStore store;
+    private final VendingDisplay display;
+    private final ReturnAmountByDenominationsStrategy returnStrategy;
+    private ReturnAmountByDenominationsStrategy refundStrategy;
+
+    private final long[] denominations;
+    private final int[] counts;
+    private final int[] usedCoins;
+
+    private int machine = -1;
+    private ByteBuffer chunk;
+    private int base;
+
+    MachineView(FleetStore store, VendingDisplay display, ReturnAmountByDenominationsStrategy returnStrategy) {
+        this.store = store;
+        this.display = display;
+        this.returnStrategy = returnStrategy;
+        this.denominations = store.getDenominations().getDenominations();
+        this.counts = new int[denominations.length];
+        this.usedCoins = new int[denominations.length];
+    }
+
+    /**
+     * Points the view at another machine of the fleet
+     *
+     * @return this view
+     */
+    public MachineView moveTo(int machine) {
+        this.chunk = store.chunkOf(machine);
+        this.base = store.offsetOf(machine);
+        this.machine = machine;
+        return this;
+    }
+
+    public int getMachine() {
+        return machine;
+    }
+
+    public void insertCoin(Money coin) {
+        int index = store.getDenominations().indexOf(coin.getCents());
+        if (index >= 0) {
+            putInt(store.coinOffset(index), getInt(store.coinOffset(index)) + 1);
+            putLong(FleetStore.CREDIT, getLong(FleetStore.CREDIT) + coin.getCents());
+            displayLeftCost();
+            tryToBuyItem();
+        } else {
+            putLong(FleetStore.PENDING_CHANGE, getLong(FleetStore.PENDING_CHANGE) + coin.getCents());
+        }
+    }
+
+    public void selectShelf(int shelfNumber) {
+        checkShelf(shelfNumber);
+        putInt(FleetStore.SELECTED_SHELF, shelfNumber);
+
+        if (getProductCount(shelfNumber) == 0)
+            display.displayString("Warning! Not enough " + store.getProduct(shelfNumber).getName());
+
+        displayLeftCost();
+        tryToBuyItem();
+    }
+
+    /**
+     * @return item from the lowest shelf with items waiting, null if there's none
+     */
+    public ProductType receiveItem() {
+        for (int i = 0; i < store.getShelfCount(); i++) {
+            int waiting = getInt(store.trayOffset(i));
+            if (waiting > 0) {
+                putInt(store.trayOffset(i), waiting - 1);
+                return store.getProduct(i);
+            }
+        }
+        return null;
+    }
+
+    public Money receiveChangeMoney() {
+        long result = getLong(FleetStore.PENDING_CHANGE);
+        putLong(FleetStore.PENDING_CHANGE, 0);
+        return Money.ofCents(result);
+    }
+
+    public void cancelOrder() {
+        returnUserMoney();
+    }
+
+    public void restockShelf(int shelfNumber, int count) {
+        checkShelf(shelfNumber);
+        if (count < 0)
+            throw new IllegalArgumentException("Can't restock negative number of products");
+        putInt(store.stockOffset(shelfNumber), getProductCount(shelfNumber) + count);
+    }
+
+    public int getShelfCount() {
+        return store.getShelfCount();
+    }
+
+    public int getProductCount(int shelfNumber) {
+        checkShelf(shelfNumber);
+        return getInt(store.stockOffset(shelfNumber));
+    }
+
+    public ProductType getProductType(int shelfNumber) {
+        return store.getProduct(shelfNumber);
+    }
+
+    public Money getCredit() {
+        return Money.ofCents(getLong(FleetStore.CREDIT));
+    }
+
+    public int getPendingItemCount() {
+        int result = 0;
+        for (int i = 0; i < store.getShelfCount(); i++)
+            result += getInt(store.trayOffset(i));
+        return result;
+    }
+
+    /**
+     * @return change dropped and not received yet, the machine keeps it
+     */
+    public Money getPendingChange() {
+        return Money.ofCents(getLong(FleetStore.PENDING_CHANGE));
+    }
+
+    /**
+     * @return copy of the coins currently in the machine
+     */
+    public CoinInventory getCoins() {
+        readCoins();
+        return new CoinInventory(denominations, counts);
+    }
+
+    private void returnUserMoney() {
+        long credit = getLong(FleetStore.CREDIT);
+        readCoins();
+        ChangeStatus status = returnStrategy.execute(denominations, counts, credit, usedCoins);
+        // The money has to go back however long it takes
+        if (status == ChangeStatus.TIMED_OUT) {
+            if (refundStrategy == null)
+                refundStrategy = new ArrayReturnAmountStrategy();
+            status = refundStrategy.execute(denominations, counts, credit, usedCoins);
+        }
+        if (status != ChangeStatus.FOUND)
+            throw new AssertionError("The machine must always be able to return the money inserted by user");
+        removeUsedCoins();
+
+        putLong(FleetStore.PENDING_CHANGE, getLong(FleetStore.PENDING_CHANGE) + credit);
+        clearMachineState();
+        display.displayString("Order canceled, money returned");
+    }
+
+    private void tryToBuyItem() {
+        int shelf = getInt(FleetStore.SELECTED_SHELF);
+        if (shelf == FleetStore.NO_SHELF || getProductCount(shelf) == 0)
+            return;
+        long credit = getLong(FleetStore.CREDIT);
+        long price = store.getPrice(shelf);
+        if (credit < price)
+            return;
+
+        long change = credit - price;
+        readCoins();
+        ChangeStatus status = returnStrategy.execute(denominations, counts, change, usedCoins);
+        if (status == ChangeStatus.TIMED_OUT) {
+            display.displayString("Warning! Change took too long to calculate! Not selling product");
+            returnUserMoney();
+        } else if (status != ChangeStatus.FOUND) {
+            display.displayString("Warning! Can't return change with owned coins! Not selling product");
+            returnUserMoney();
+        } else {
+            putInt(store.trayOffset(shelf), getInt(store.trayOffset(shelf)) + 1);
+            putLong(FleetStore.PENDING_CHANGE, getLong(FleetStore.PENDING_CHANGE) + change);
+            removeUsedCoins();
+            putInt(store.stockOffset(shelf), getProductCount(shelf) - 1);
+            clearMachineState();
+            display.displayString("Item bought, change returned");
+        }
+    }
+
+    private void displayLeftCost() {
+        int shelf = getInt(FleetStore.SELECTED_SHELF);
+        if (shelf != FleetStore.NO_SHELF)
+            display.displayMoney(Money.ofCents(store.getPrice(shelf) - getLong(FleetStore.CREDIT)));
+    }
+
+    private void readCoins() {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = getInt(store.coinOffset(i));
+    }
+
+    /**
+     * Takes the coins of the last found change out of the record, counts have to be read before finding it
+     */
+    private void removeUsedCoins() {
+        for (int i = 0; i < counts.length; i++) {
+            assert counts[i] >= usedCoins[i];
+            if (usedCoins[i] != 0)
+                putInt(store.coinOffset(i), counts[i] - usedCoins[i]);
+        }
+    }
+
+    private void clearMachineState() {
+        putLong(FleetStore.CREDIT, 0);
+        putInt(FleetStore.SELECTED_SHELF, FleetStore.NO_SHELF);
+    }
+
+    private void checkShelf(int shelfNumber) {
+        if (shelfNumber < 0 || shelfNumber >= store.getShelfCount())
+            throw new IndexOutOfBoundsException("No shelf " + shelfNumber);
+    }
+
+    private int getInt(int field) {
+        return chunk().getInt(base + field);
+    }
+
+    private long getLong(int field) {
+        return chunk().getLong(base + field);
+    }
+
+    private void putInt(int field, int value) {
+        chunk().putInt(base + field, value);
+    }
+
+    private void putLong(int field, long value) {
+        chunk().putLong(base + field, value);
+    }
+
+    private ByteBuffer chunk() {
+        if (chunk == null)
+            throw new IllegalStateException("View isn't on any machine, move it first");
+        return chunk;
+    }
+}
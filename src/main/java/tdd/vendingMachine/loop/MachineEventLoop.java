@@ -0,0 +1,252 @@
+package tdd.vendingMachine.loop;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Non-blocking front of a VendingMachine for many I/O threads. Commands become events in a ring buffer allocated up
+ * front, and a single thread per machine applies them in order, so the machine itself stays single threaded and
+ * deterministic. Results come back as futures, completed on the machine's thread, and display output goes to the
+ * machine's display from that thread too.
+ *  - A producer claims a sequence with compare-and-set on the claim counter, fills the event in place and publishes
+ *    it by writing the round of the sequence into the slot's flag, so producers never wait for each other's writes
+ *  - A full ring makes producers wait for the machine's thread, nothing is dropped
+ *  - The machine's thread takes every consecutive published event at once and tells producers about the free slots
+ *    once per batch. It parks on an empty ring, producers only wake it up when it's parked
+ * Once the loop is created the machine must not be used directly anymore.
+ */
+public class MachineEventLoop implements Closeable {
+    private enum Command {
+        INSERT_COIN,
+        SELECT_SHELF,
+        CANCEL_ORDER,
+        RECEIVE_ITEM,
+        RECEIVE_CHANGE
+    }
+
+    private static class Event {
+        Command command;
+        long argument;
+        CompletableFuture<Object> result;
+    }
+
+    private final VendingMachine machine;
+
+    private final int mask;
+    private final int roundShift;
+    private final Event[] events;
+    // Round of the sequence plus one published into every slot, 0 is never published
+    private final AtomicIntegerArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    private final Thread worker;
+    private volatile boolean workerParked;
+    private volatile boolean closed;
+    private volatile boolean terminated;
+
+    private volatile long batchCount;
+    private volatile long eventCount;
+
+    /**
+     * @param capacity how many commands can wait, rounded up to a power of two
+     */
+    public MachineEventLoop(VendingMachine machine, int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity has to be between 1 and 2^30");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        this.machine = machine;
+        this.mask = size - 1;
+        this.roundShift = Integer.numberOfTrailingZeros(size);
+        this.events = new Event[size];
+        for (int i = 0; i < size; i++)
+            events[i] = new Event();
+        this.published = new AtomicIntegerArray(size);
+
+        this.worker = new Thread(this::run, "vending-machine-loop");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public CompletableFuture<Void> insertCoin(Money coin) {
+        return publish(Command.INSERT_COIN, coin.getCents());
+    }
+
+    public CompletableFuture<Void> selectShelf(int shelfNumber) {
+        return publish(Command.SELECT_SHELF, shelfNumber);
+    }
+
+    public CompletableFuture<Void> cancelOrder() {
+        return publish(Command.CANCEL_ORDER, 0);
+    }
+
+    /**
+     * @return future of the item, completed with null if there's none
+     */
+    public CompletableFuture<ProductType> receiveItem() {
+        return publish(Command.RECEIVE_ITEM, 0);
+    }
+
+    public CompletableFuture<Money> receiveChange() {
+        return publish(Command.RECEIVE_CHANGE, 0);
+    }
+
+    /**
+     * @return how many times the machine's thread took a batch of events
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Applies the commands published so far and stops the machine's thread. Commands racing with closing may be
+     * rejected, their futures fail with IllegalStateException
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> publish(Command command, long argument) {
+        if (closed)
+            throw new IllegalStateException("Event loop is closed");
+
+        long sequence = claim();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Event event = events[(int) sequence & mask];
+        event.command = command;
+        event.argument = argument;
+        event.result = result;
+        published.set((int) sequence & mask, round(sequence));
+
+        if (terminated)
+            result.completeExceptionally(new IllegalStateException("Event loop is closed"));
+        else if (workerParked)
+            LockSupport.unpark(worker);
+        return (CompletableFuture<T>) result;
+    }
+
+    private long claim() {
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence - consumed.get() > mask) {
+                if (terminated)
+                    throw new IllegalStateException("Event loop is closed");
+                // Ring is full, the machine's thread is behind
+                Thread.yield();
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    private int round(long sequence) {
+        return (int) (sequence >>> roundShift) + 1;
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == round(sequence);
+    }
+
+    private void run() {
+        long next = 0;
+        while (true) {
+            long end = next;
+            while (end - next <= mask && isPublished(end))
+                end++;
+
+            if (end == next) {
+                if (closed) {
+                    reject(next);
+                    return;
+                }
+                workerParked = true;
+                // Checked again after announcing the park, so a producer publishing now either is seen or unparks
+                if (!isPublished(next) && !closed)
+                    LockSupport.park(this);
+                workerParked = false;
+                continue;
+            }
+
+            for (long sequence = next; sequence < end; sequence++)
+                apply(events[(int) sequence & mask]);
+            next = end;
+            consumed.set(next);
+            batchCount++;
+        }
+    }
+
+    private void apply(Event event) {
+        CompletableFuture<Object> result = event.result;
+        event.result = null;
+        eventCount++;
+        try {
+            switch (event.command) {
+                case INSERT_COIN:
+                    machine.insertCoin(Money.ofCents(event.argument));
+                    result.complete(null);
+                    break;
+                case SELECT_SHELF:
+                    machine.selectShelf((int) event.argument);
+                    result.complete(null);
+                    break;
+                case CANCEL_ORDER:
+                    machine.cancelOrder();
+                    result.complete(null);
+                    break;
+                case RECEIVE_ITEM:
+                    result.complete(machine.receiveItem());
+                    break;
+                case RECEIVE_CHANGE:
+                    result.complete(machine.receiveChangeMoney());
+                    break;
+                default:
+                    throw new AssertionError("Unhandled command " + event.command);
+            }
+        } catch (Throwable e) {
+            // Errors too, e.g. the machine failing to return money, the thread has to stay alive for the others
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Fails everything claimed after the last batch, producers seeing terminated fail their own commands
+     */
+    private void reject(long next) {
+        terminated = true;
+        for (long sequence = next; sequence < claimed.get(); sequence++) {
+            while (!isPublished(sequence))
+                Thread.yield();
+            Event event = events[(int) sequence & mask];
+            event.result.completeExceptionally(new IllegalStateException("Event loop is closed"));
+            event.result = null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package tdd.vendingMachine.metrics;
+
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+/**
+ * Decorator recording how long every change calculation takes
+ */
+public class InstrumentedReturnAmountStrategy implements ReturnAmountByDenominationsStrategy {
+    private final ReturnAmountByDenominationsStrategy strategy;
+    private final LatencyHistogram histogram;
+
+    public InstrumentedReturnAmountStrategy(ReturnAmountByDenominationsStrategy strategy, LatencyHistogram histogram) {
+        this.strategy = strategy;
+        this.histogram = histogram;
+    }
+
+    @Override
+    public ChangeStatus execute(long[] denominations, int[] counts, long returnAmount, int[] usedCoins) {
+        long start = System.nanoTime();
+        ChangeStatus status = strategy.execute(denominations, counts, returnAmount, usedCoins);
+        histogram.record(System.nanoTime() - start);
+        return status;
+    }
+}
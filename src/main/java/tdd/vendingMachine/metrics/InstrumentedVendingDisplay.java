@@ -0,0 +1,40 @@
+package tdd.vendingMachine.metrics;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.display.VendingDisplay;
+
+import java.math.BigDecimal;
+
+/**
+ * Decorator recording how long the machine waits for the display
+ */
+public class InstrumentedVendingDisplay implements VendingDisplay {
+    private final VendingDisplay display;
+    private final LatencyHistogram histogram;
+
+    public InstrumentedVendingDisplay(VendingDisplay display, LatencyHistogram histogram) {
+        this.display = display;
+        this.histogram = histogram;
+    }
+
+    @Override
+    public void displayMoney(BigDecimal money) {
+        long start = System.nanoTime();
+        display.displayMoney(money);
+        histogram.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void displayMoney(Money money) {
+        long start = System.nanoTime();
+        display.displayMoney(money);
+        histogram.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void displayString(String string) {
+        long start = System.nanoTime();
+        display.displayString(string);
+        histogram.record(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,109 @@
+package tdd.vendingMachine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Histogram of latencies in nanoseconds, with buckets growing the same way as in HdrHistogram: values below 32 get a
+ * bucket each, above that every power of two is split into 16 buckets, so a value is known within 1/16 (~6%) of itself
+ * up to Long.MAX_VALUE with 960 buckets.
+ * Recording is a single atomic increment (plus a rarely contended max update) and never blocks, so it can be used
+ * from any number of threads. Readers see counts as of some moment during the read, good enough for monitoring
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value))
+            currentMax = max.get();
+    }
+
+    public long getCount() {
+        long result = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            result += counts.get(i);
+        return result;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return highest value of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        return snapshot(new double[]{percentile})[0];
+    }
+
+    public LatencySnapshot snapshot() {
+        long[] values = snapshot(new double[]{50, 90, 99, 99.9});
+        long count = values[4];
+        return new LatencySnapshot(
+            count,
+            count == 0 ? 0 : sum.sum() / count,
+            values[0],
+            values[1],
+            values[2],
+            values[3],
+            getMax()
+        );
+    }
+
+    /**
+     * @return value at every percentile, followed by the total count
+     */
+    private long[] snapshot(double[] percentiles) {
+        long[] buckets = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = counts.get(i);
+            count += buckets[i];
+        }
+
+        long[] result = new long[percentiles.length + 1];
+        result[percentiles.length] = count;
+        if (count == 0)
+            return result;
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    result[p] = Math.min(highestValueOf(i), getMax());
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < LINEAR_LIMIT)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,144 @@
+package tdd.vendingMachine.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counters and latencies of one machine, or of many machines sharing it, everything can be recorded from any thread.
+ * VendingMachine records purchases, cancels and their outcomes when it's given metrics (see setMetrics), the change
+ * strategy and the display are measured by wrapping them into InstrumentedReturnAmountStrategy and
+ * InstrumentedVendingDisplay with the histograms from here
+ */
+public class MachineMetrics implements MachineMetricsMXBean {
+    private final LongAdder sales = new LongAdder();
+    private final LongAdder cancels = new LongAdder();
+    private final LongAdder changeFailures = new LongAdder();
+    private final LongAdder changeTimeouts = new LongAdder();
+    private final LongAdder stockOuts = new LongAdder();
+
+    private final LatencyHistogram purchaseLatency = new LatencyHistogram();
+    private final LatencyHistogram cancelLatency = new LatencyHistogram();
+    private final LatencyHistogram changeLatency = new LatencyHistogram();
+    private final LatencyHistogram displayLatency = new LatencyHistogram();
+
+    /**
+     * A purchase ended with a sale
+     */
+    public void recordSale(long nanos) {
+        sales.increment();
+        purchaseLatency.record(nanos);
+    }
+
+    /**
+     * A purchase ended with returning the money because change couldn't be paid
+     */
+    public void recordChangeFailure(long nanos) {
+        changeFailures.increment();
+        purchaseLatency.record(nanos);
+    }
+
+    /**
+     * A purchase ended with returning the money because the change strategy ran out of its budget
+     */
+    public void recordChangeTimeout(long nanos) {
+        changeTimeouts.increment();
+        purchaseLatency.record(nanos);
+    }
+
+    public void recordCancel(long nanos) {
+        cancels.increment();
+        cancelLatency.record(nanos);
+    }
+
+    public void recordStockOut() {
+        stockOuts.increment();
+    }
+
+    public LatencyHistogram getChangeHistogram() {
+        return changeLatency;
+    }
+
+    public LatencyHistogram getDisplayHistogram() {
+        return displayLatency;
+    }
+
+    /**
+     * Makes the metrics visible in JConsole and other JMX clients as tdd.vendingMachine:type=MachineMetrics,name=...
+     *
+     * @return name it was registered with
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName(
+                "tdd.vendingMachine:type=MachineMetrics,name=" + ObjectName.quote(name)
+            );
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Can't register metrics " + name, e);
+        }
+    }
+
+    @Override
+    public long getSales() {
+        return sales.sum();
+    }
+
+    @Override
+    public long getCancels() {
+        return cancels.sum();
+    }
+
+    @Override
+    public long getChangeFailures() {
+        return changeFailures.sum();
+    }
+
+    @Override
+    public long getChangeTimeouts() {
+        return changeTimeouts.sum();
+    }
+
+    @Override
+    public long getStockOuts() {
+        return stockOuts.sum();
+    }
+
+    @Override
+    public LatencySnapshot getPurchaseLatency() {
+        return purchaseLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getCancelLatency() {
+        return cancelLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getChangeLatency() {
+        return changeLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getDisplayLatency() {
+        return displayLatency.snapshot();
+    }
+
+    /**
+     * Human readable dump, one line per counter group or histogram
+     */
+    @Override
+    public String toString() {
+        return "sales=" + getSales() +
+            " cancels=" + getCancels() +
+            " changeFailures=" + getChangeFailures() +
+            " changeTimeouts=" + getChangeTimeouts() +
+            " stockOuts=" + getStockOuts() + System.lineSeparator() +
+            "purchase[ns] " + getPurchaseLatency() + System.lineSeparator() +
+            "cancel[ns] " + getCancelLatency() + System.lineSeparator() +
+            "change[ns] " + getChangeLatency() + System.lineSeparator() +
+            "display[ns] " + getDisplayLatency();
+    }
+}
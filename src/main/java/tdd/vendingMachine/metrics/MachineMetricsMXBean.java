@@ -0,0 +1,17 @@
+package tdd.vendingMachine.metrics;
+
+/**
+ * JMX view of MachineMetrics, latencies are in nanoseconds
+ */
+public interface MachineMetricsMXBean {
+    long getSales();
+    long getCancels();
+    long getChangeFailures();
+    long getChangeTimeouts();
+    long getStockOuts();
+
+    LatencySnapshot getPurchaseLatency();
+    LatencySnapshot getCancelLatency();
+    LatencySnapshot getChangeLatency();
+    LatencySnapshot getDisplayLatency();
+}
@@ -0,0 +1,27 @@
+package tdd.vendingMachine.metrics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Prints the metrics every period from its own daemon thread, for machines without a JMX client around
+ */
+public class MetricsReporter implements Closeable {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vending-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsReporter(MachineMetrics metrics, PrintStream out, long period, TimeUnit unit) {
+        executor.scheduleAtFixedRate(() -> out.println("[metrics] " + metrics), period, period, unit);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,36 @@
+package tdd.vendingMachine.metrics;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+
+/**
+ * Sales of one product at some moment, see SalesAnalytics.getTopProducts
+ */
+public class ProductSales {
+    private final ProductType product;
+    private final long sales;
+    private final Money revenue;
+
+    public ProductSales(ProductType product, long sales, Money revenue) {
+        this.product = product;
+        this.sales = sales;
+        this.revenue = revenue;
+    }
+
+    public ProductType getProduct() {
+        return product;
+    }
+
+    public long getSales() {
+        return sales;
+    }
+
+    public Money getRevenue() {
+        return revenue;
+    }
+
+    @Override
+    public String toString() {
+        return product.getName() + " sales=" + sales + " revenue=" + revenue;
+    }
+}
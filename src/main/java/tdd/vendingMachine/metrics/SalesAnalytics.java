@@ -0,0 +1,170 @@
+package tdd.vendingMachine.metrics;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachineListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/*
+ * What sells, fed by the machines it's the listener of (see VendingMachine.setListener), from any number of threads.
+ *  - Sales per shelf and sales and revenue per product in striped counters, so machines selling at the same time
+ *    don't fight over a cache line
+ *  - Top selling products are picked from the per product counters when asked, products are the catalog of the
+ *    fleet, dozens to thousands, so the exact answer costs less than maintaining an approximate sketch on every sale
+ *  - Sales and revenue of the last minute and the last hour in rings of 60 buckets, see SalesWindow
+ * A sale is a few uncontended adds plus a map lookup, nothing on the sale path waits for readers, and readers see
+ * counts as of some moment during the read
+ */
+public class SalesAnalytics implements VendingMachineListener {
+    private static final int WINDOW_BUCKETS = 60;
+
+    private static class ProductCounters {
+        final LongAdder sales = new LongAdder();
+        final LongAdder cents = new LongAdder();
+    }
+
+    private final LongSupplier clock;
+
+    private final LongAdder[] shelfSales;
+    private final LongAdder[] shelfChangeFailures;
+    private final Map<ProductType, ProductCounters> products = new ConcurrentHashMap<>();
+    private final LongAdder cancels = new LongAdder();
+    private final LongAdder changeFailures = new LongAdder();
+    private final LongAdder changeTimeouts = new LongAdder();
+
+    private final SalesWindow lastMinute = new SalesWindow(TimeUnit.SECONDS.toMillis(1), WINDOW_BUCKETS);
+    private final SalesWindow lastHour = new SalesWindow(TimeUnit.MINUTES.toMillis(1), WINDOW_BUCKETS);
+
+    /**
+     * @param shelfCount shelves of the machines, the most of any machine when they differ
+     */
+    public SalesAnalytics(int shelfCount) {
+        this(shelfCount, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock current time in milliseconds, for the windows
+     */
+    public SalesAnalytics(int shelfCount, LongSupplier clock) {
+        this.clock = clock;
+        this.shelfSales = new LongAdder[shelfCount];
+        this.shelfChangeFailures = new LongAdder[shelfCount];
+        for (int i = 0; i < shelfCount; i++) {
+            shelfSales[i] = new LongAdder();
+            shelfChangeFailures[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void onSale(int shelfNumber, ProductType product, Money price) {
+        long cents = price.getCents();
+        shelfSales[shelfNumber].increment();
+        ProductCounters counters = products.get(product);
+        if (counters == null)
+            counters = products.computeIfAbsent(product, key -> new ProductCounters());
+        counters.sales.increment();
+        counters.cents.add(cents);
+
+        long now = clock.getAsLong();
+        lastMinute.record(now, cents);
+        lastHour.record(now, cents);
+    }
+
+    @Override
+    public void onCancel(Money returned) {
+        cancels.increment();
+    }
+
+    @Override
+    public void onChangeFailure(int shelfNumber, Money change) {
+        shelfChangeFailures[shelfNumber].increment();
+        changeFailures.increment();
+    }
+
+    @Override
+    public void onChangeTimeout(int shelfNumber, Money change) {
+        shelfChangeFailures[shelfNumber].increment();
+        changeTimeouts.increment();
+    }
+
+    public long getShelfSales(int shelfNumber) {
+        return shelfSales[shelfNumber].sum();
+    }
+
+    /**
+     * @return purchases on the shelf that ended without a sale because of change, failed or timed out
+     */
+    public long getShelfChangeFailures(int shelfNumber) {
+        return shelfChangeFailures[shelfNumber].sum();
+    }
+
+    public long getProductSales(ProductType product) {
+        ProductCounters counters = products.get(product);
+        return counters == null ? 0 : counters.sales.sum();
+    }
+
+    public Money getProductRevenue(ProductType product) {
+        ProductCounters counters = products.get(product);
+        return Money.ofCents(counters == null ? 0 : counters.cents.sum());
+    }
+
+    /**
+     * @return at most count best selling products, best first, ties in no particular order
+     */
+    public List<ProductSales> getTopProducts(int count) {
+        if (count <= 0)
+            return Collections.emptyList();
+        Comparator<ProductSales> bySales = Comparator.comparingLong(ProductSales::getSales);
+        // Worst of the best so far on top, to be replaced by anything selling more
+        PriorityQueue<ProductSales> best = new PriorityQueue<>(count, bySales);
+        for (Map.Entry<ProductType, ProductCounters> entry : products.entrySet()) {
+            long sales = entry.getValue().sales.sum();
+            if (best.size() < count || sales > best.peek().getSales()) {
+                best.add(new ProductSales(entry.getKey(), sales, Money.ofCents(entry.getValue().cents.sum())));
+                if (best.size() > count)
+                    best.poll();
+            }
+        }
+        List<ProductSales> result = new ArrayList<>(best);
+        result.sort(bySales.reversed());
+        return result;
+    }
+
+    public long getCancels() {
+        return cancels.sum();
+    }
+
+    public long getChangeFailures() {
+        return changeFailures.sum();
+    }
+
+    public long getChangeTimeouts() {
+        return changeTimeouts.sum();
+    }
+
+    public long getSalesLastMinute() {
+        return lastMinute.getSales(clock.getAsLong());
+    }
+
+    public Money getRevenueLastMinute() {
+        return Money.ofCents(lastMinute.getCents(clock.getAsLong()));
+    }
+
+    public long getSalesLastHour() {
+        return lastHour.getSales(clock.getAsLong());
+    }
+
+    public Money getRevenueLastHour() {
+        return Money.ofCents(lastHour.getCents(clock.getAsLong()));
+    }
+}
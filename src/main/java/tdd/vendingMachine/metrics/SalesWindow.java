@@ -0,0 +1,82 @@
+package tdd.vendingMachine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Sales and revenue of the last few periods, e.g. 60 buckets of a second for the last minute. Buckets form a ring,
+ * the bucket of a period is reused by the period a whole ring later, stamped with the period it currently counts.
+ * The first writer of a new period marks the bucket as being reset, clears it and stamps it, writers of the same
+ * period wait for that few stores long moment, others just add to the bucket's striped counters.
+ * Readers only sum the buckets stamped with periods inside the window and never wait, a bucket being reset is left
+ * out, so a read is off by at most the sales of the moment it was taken
+ */
+class SalesWindow {
+    private static final long RESETTING = -1;
+
+    private final long periodMillis;
+    private final int length;
+    private final AtomicLongArray periods;
+    private final LongAdder[] sales;
+    private final LongAdder[] cents;
+
+    /**
+     * @param periodMillis how long a bucket counts
+     * @param length how many buckets, the window is periodMillis * length long
+     */
+    SalesWindow(long periodMillis, int length) {
+        this.periodMillis = periodMillis;
+        this.length = length;
+        this.periods = new AtomicLongArray(length);
+        this.sales = new LongAdder[length];
+        this.cents = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            periods.set(i, Long.MIN_VALUE);
+            sales[i] = new LongAdder();
+            cents[i] = new LongAdder();
+        }
+    }
+
+    void record(long nowMillis, long revenueCents) {
+        long period = nowMillis / periodMillis;
+        int slot = (int) (period % length);
+        while (true) {
+            long stamp = periods.get(slot);
+            if (stamp == period) {
+                sales[slot].increment();
+                cents[slot].add(revenueCents);
+                return;
+            }
+            if (stamp > period) {
+                // Writer was delayed for a whole ring, the sale is out of every window already
+                return;
+            }
+            if (stamp != RESETTING && periods.compareAndSet(slot, stamp, RESETTING)) {
+                sales[slot].reset();
+                cents[slot].reset();
+                periods.set(slot, period);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    long getSales(long nowMillis) {
+        return sum(nowMillis, sales);
+    }
+
+    long getCents(long nowMillis) {
+        return sum(nowMillis, cents);
+    }
+
+    private long sum(long nowMillis, LongAdder[] counters) {
+        long current = nowMillis / periodMillis;
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            long stamp = periods.get(i);
+            if (stamp > current - length && stamp <= current)
+                result += counters[i].sum();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package tdd.vendingMachine.persistence;
+
+/**
+ * Kinds of records in the transaction journal. The code is what gets written to disk, so never reuse one
+ */
+public enum JournalRecordType {
+    /**
+     * value is the coin in cents
+     */
+    INSERT_COIN(1),
+    /**
+     * argument is the shelf number
+     */
+    SELECT_SHELF(2),
+    CANCEL(3),
+    RECEIVE_ITEM(4),
+    RECEIVE_CHANGE(5),
+    /**
+     * argument is the shelf number, value the number of added products
+     */
+    RESTOCK_SHELF(6),
+    /**
+     * Result of the command before it for the audit trail, written while that command runs. Replay checks that the
+     * command makes the same sale again. argument is the shelf number, value the price in cents
+     */
+    SALE(7),
+    /**
+     * One line of the basket bought by the following BUY_BASKET, argument is the shelf number, value the quantity
+     */
+    BASKET_LINE(8),
+    /**
+     * argument is the number of BASKET_LINE records just before it
+     */
+    BUY_BASKET(9),
+    RECEIVE_ITEMS(10),
+    /**
+     * The command before it (and its sales, if any) threw, the machine is left as that command left it
+     */
+    FAILED(11),
+    /**
+     * argument is 1 to turn escrow mode on, 0 to turn it off
+     */
+    ESCROW_MODE(12);
+
+    private static final JournalRecordType[] BY_CODE = new JournalRecordType[13];
+
+    static {
+        for (JournalRecordType type : values())
+            BY_CODE[type.code] = type;
+    }
+
+    private final byte code;
+
+    JournalRecordType(int code) {
+        this.code = (byte) code;
+    }
+
+    byte getCode() {
+        return code;
+    }
+
+    static JournalRecordType fromCode(byte code) {
+        if (code <= 0 || code >= BY_CODE.length || BY_CODE[code] == null)
+            throw new IllegalStateException("Corrupted journal, unknown record type " + code);
+        return BY_CODE[code];
+    }
+}
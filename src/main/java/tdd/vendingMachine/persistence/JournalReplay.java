@@ -0,0 +1,212 @@
+package tdd.vendingMachine.persistence;
+
+import tdd.vendingMachine.BasketLine;
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingMachineListener;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Rebuilds machine state by applying journaled commands again. The machine has to start in the same state as the
+ * journaled one did and use an equivalent change strategy. JournalingVendingMachine only takes deterministic
+ * strategies (no time limit), so sales and change come out the same. The file is mapped read-only and walked record
+ * by record, nothing is allocated per record.
+ * Replay checks that it follows the journal: a command throws again exactly when the journal marks it FAILED, and
+ * makes exactly the sales journaled after it. Only the last command may be missing its FAILED or sale records, the
+ * machine may have stopped before writing them
+ */
+public class JournalReplay {
+    private static final long MAX_MAPPING = Integer.MAX_VALUE & ~(TransactionJournal.RECORD_SIZE - 1);
+
+    /**
+     * @return number of records read
+     * @throws IllegalStateException if the journal is corrupted or the machine doesn't do what the journal says
+     */
+    public static long replay(Path journal, VendingMachine machine) throws IOException {
+        VendingMachineListener listener = machine.getListener();
+        Replayer replayer = new Replayer(machine, listener);
+        machine.setListener(replayer);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TransactionJournal.HEADER_SIZE)
+                throw new IllegalStateException("Not a vending machine journal");
+
+            long records = 0;
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    position,
+                    Math.min(MAX_MAPPING, size - position)
+                );
+                buffer.order(ByteOrder.BIG_ENDIAN);
+                if (position == 0) {
+                    TransactionJournal.checkHeader(buffer.getInt(0), buffer.getInt(4));
+                    buffer.position(TransactionJournal.HEADER_SIZE);
+                }
+
+                while (buffer.remaining() >= TransactionJournal.RECORD_SIZE) {
+                    int offset = buffer.position();
+                    byte code = buffer.get(offset);
+                    if (code == 0)
+                        return records;
+                    replayer.record(
+                        JournalRecordType.fromCode(code),
+                        buffer.getInt(offset + 4),
+                        buffer.getLong(offset + 8)
+                    );
+                    buffer.position(offset + TransactionJournal.RECORD_SIZE);
+                    records++;
+                }
+                position += buffer.capacity();
+            }
+            return records;
+        } finally {
+            machine.setListener(listener);
+        }
+    }
+
+    /**
+     * Applies the records and collects the sales the replayed commands make, passing every event on to the
+     * machine's own listener
+     */
+    private static class Replayer implements VendingMachineListener {
+        private final VendingMachine machine;
+        private final VendingMachineListener listener;
+        // Lines of the basket being read
+        private final List<BasketLine> basket = new ArrayList<>();
+
+        // Sales made by the last command, not matched with SALE records yet
+        private int[] saleShelves = new int[4];
+        private long[] salePrices = new long[4];
+        private int sales;
+        private int matchedSales;
+        // Last command threw
+        private boolean failed;
+
+        Replayer(VendingMachine machine, VendingMachineListener listener) {
+            this.machine = machine;
+            this.listener = listener;
+        }
+
+        void record(JournalRecordType type, int argument, long value) {
+            switch (type) {
+                case SALE:
+                    if (matchedSales == sales || saleShelves[matchedSales] != argument ||
+                        salePrices[matchedSales] != value)
+                        throw diverged("sale on shelf " + argument + " for " + value + " cents wasn't made again");
+                    matchedSales++;
+                    break;
+                case FAILED:
+                    if (!failed)
+                        throw diverged("failed command succeeded");
+                    failed = false;
+                    break;
+                case BASKET_LINE:
+                    basket.add(new BasketLine(argument, (int) value));
+                    break;
+                default:
+                    command(type, argument, value);
+            }
+        }
+
+        private void command(JournalRecordType type, int argument, long value) {
+            if (failed)
+                throw diverged("command failed, the journal doesn't say so");
+            if (matchedSales != sales)
+                throw diverged("sale on shelf " + saleShelves[matchedSales] + " isn't in the journal");
+            if (type == JournalRecordType.BUY_BASKET && basket.size() != argument)
+                throw new IllegalStateException("Corrupted journal, basket lines don't match " + argument);
+            sales = 0;
+            matchedSales = 0;
+
+            try {
+                apply(type, argument, value);
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+            if (type == JournalRecordType.BUY_BASKET)
+                basket.clear();
+        }
+
+        private void apply(JournalRecordType type, int argument, long value) {
+            switch (type) {
+                case INSERT_COIN:
+                    machine.insertCoin(Money.ofCents(value));
+                    break;
+                case SELECT_SHELF:
+                    machine.selectShelf(argument);
+                    break;
+                case CANCEL:
+                    machine.cancelOrder();
+                    break;
+                case RECEIVE_ITEM:
+                    machine.receiveItem();
+                    break;
+                case RECEIVE_CHANGE:
+                    machine.receiveChangeMoney();
+                    break;
+                case RESTOCK_SHELF:
+                    machine.restockShelf(argument, (int) value);
+                    break;
+                case BUY_BASKET:
+                    machine.buyBasket(basket);
+                    break;
+                case RECEIVE_ITEMS:
+                    machine.receiveItems();
+                    break;
+                case ESCROW_MODE:
+                    machine.setEscrowMode(argument != 0);
+                    break;
+                default:
+                    throw new AssertionError("Unhandled record type " + type);
+            }
+        }
+
+        private static IllegalStateException diverged(String reason) {
+            return new IllegalStateException("Machine doesn't follow the journal, " + reason);
+        }
+
+        @Override
+        public void onSale(int shelfNumber, ProductType product, Money price) {
+            if (sales == saleShelves.length) {
+                saleShelves = Arrays.copyOf(saleShelves, sales * 2);
+                salePrices = Arrays.copyOf(salePrices, sales * 2);
+            }
+            saleShelves[sales] = shelfNumber;
+            salePrices[sales] = price.getCents();
+            sales++;
+            listener.onSale(shelfNumber, product, price);
+        }
+
+        @Override
+        public void onCancel(Money returned) {
+            listener.onCancel(returned);
+        }
+
+        @Override
+        public void onChangeFailure(int shelfNumber, Money change) {
+            listener.onChangeFailure(shelfNumber, change);
+        }
+
+        @Override
+        public void onChangeTimeout(int shelfNumber, Money change) {
+            listener.onChangeTimeout(shelfNumber, change);
+        }
+
+        @Override
+        public void onStockOut(int shelfNumber) {
+            listener.onStockOut(shelfNumber);
+        }
+    }
+}
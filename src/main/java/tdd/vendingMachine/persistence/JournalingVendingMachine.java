@@ -0,0 +1,209 @@
+package tdd.vendingMachine.persistence;
+
+import tdd.vendingMachine.BasketLine;
+import tdd.vendingMachine.BasketStatus;
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingMachineListener;
+import tdd.vendingMachine.VendingShelf;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/*
+ * Vending machine writing every command it executed into a TransactionJournal, so that JournalReplay can bring
+ * the state back after a restart. Every command is written before it runs, so a crash can't lose a command the
+ * machine acted on, and a command that throws is followed by a FAILED record. Sales are written while the command
+ * runs, after the command's record, for the audit trail. The journal is owned by the caller, who closes it.
+ * Replay runs the commands again instead of reading their results, so only deterministic change strategies are
+ * accepted, a time limited one could sell on replay what it gave up on here
+ */
+public class JournalingVendingMachine extends VendingMachine {
+    private final TransactionJournal journal;
+    private VendingMachineListener listener = VendingMachineListener.NONE;
+
+    /**
+     * @param returnStrategy has to be deterministic, see ReturnAmountByDenominationsStrategy.isDeterministic
+     */
+    public JournalingVendingMachine(
+        VendingDisplay display,
+        ReturnAmountByDenominationsStrategy returnStrategy,
+        List<VendingShelf> shelves,
+        CoinInventory coins,
+        TransactionJournal journal
+    ) {
+        super(display, returnStrategy, shelves, coins);
+        requireDeterministic(returnStrategy);
+        this.journal = journal;
+        super.setListener(new VendingMachineListener() {
+            @Override
+            public void onSale(int shelfNumber, ProductType product, Money price) {
+                write(JournalRecordType.SALE, shelfNumber, price.getCents());
+                listener.onSale(shelfNumber, product, price);
+            }
+
+            @Override
+            public void onCancel(Money returned) {
+                listener.onCancel(returned);
+            }
+
+            @Override
+            public void onChangeFailure(int shelfNumber, Money change) {
+                listener.onChangeFailure(shelfNumber, change);
+            }
+
+            @Override
+            public void onChangeTimeout(int shelfNumber, Money change) {
+                listener.onChangeTimeout(shelfNumber, change);
+            }
+
+            @Override
+            public void onStockOut(int shelfNumber) {
+                listener.onStockOut(shelfNumber);
+            }
+        });
+    }
+
+    @Override
+    public void setListener(VendingMachineListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public VendingMachineListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param strategy has to be deterministic like the return strategy
+     */
+    @Override
+    public void setSpeculation(Executor executor, ReturnAmountByDenominationsStrategy strategy) {
+        if (strategy != null)
+            requireDeterministic(strategy);
+        super.setSpeculation(executor, strategy);
+    }
+
+    @Override
+    public void setEscrowMode(boolean enabled) {
+        write(JournalRecordType.ESCROW_MODE, enabled ? 1 : 0, 0);
+        try {
+            super.setEscrowMode(enabled);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public void insertCoin(Money coin) {
+        write(JournalRecordType.INSERT_COIN, 0, coin.getCents());
+        try {
+            super.insertCoin(coin);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public void selectShelf(int shelfNumber) {
+        write(JournalRecordType.SELECT_SHELF, shelfNumber, 0);
+        try {
+            super.selectShelf(shelfNumber);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public void cancelOrder() {
+        write(JournalRecordType.CANCEL, 0, 0);
+        try {
+            super.cancelOrder();
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public BasketStatus buyBasket(List<BasketLine> basket) {
+        for (BasketLine line : basket)
+            write(JournalRecordType.BASKET_LINE, line.getShelfNumber(), line.getQuantity());
+        write(JournalRecordType.BUY_BASKET, basket.size(), 0);
+        try {
+            return super.buyBasket(basket);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public ProductType receiveItem() {
+        write(JournalRecordType.RECEIVE_ITEM, 0, 0);
+        try {
+            return super.receiveItem();
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public List<ProductType> receiveItems() {
+        write(JournalRecordType.RECEIVE_ITEMS, 0, 0);
+        try {
+            return super.receiveItems();
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public Money receiveChangeMoney() {
+        write(JournalRecordType.RECEIVE_CHANGE, 0, 0);
+        try {
+            return super.receiveChangeMoney();
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public void restockShelf(int shelfNumber, int count) {
+        write(JournalRecordType.RESTOCK_SHELF, shelfNumber, count);
+        try {
+            super.restockShelf(shelfNumber, count);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    private static void requireDeterministic(ReturnAmountByDenominationsStrategy strategy) {
+        if (!strategy.isDeterministic())
+            throw new IllegalArgumentException("Journaled machines need a deterministic change strategy");
+    }
+
+    /**
+     * @return the exception, to be thrown again by the command
+     */
+    private RuntimeException failed(RuntimeException e) {
+        try {
+            write(JournalRecordType.FAILED, 0, 0);
+        } catch (UncheckedIOException journalError) {
+            e.addSuppressed(journalError);
+        }
+        return e;
+    }
+
+    private void write(JournalRecordType type, int argument, long value) {
+        try {
+            journal.append(type, argument, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package tdd.vendingMachine.persistence;
+
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingShelf;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/*
+ * Binary snapshot of the state of a fleet of machines (a single machine is a fleet of one). Products and
+ * denominations are the same across a fleet, so they are stored once and machines refer to products by index:
+ *
+ *   int magic, int version, int machine count
+ *   int product count, then for every product: long price, int name length, name in UTF-8,
+ *     int SKU length, SKU in UTF-8 (since version 2, the SKU of version 1 products is their name)
+ *   int denomination count, then long for every denomination
+ *   for every machine:
+ *     int shelf count, then int product, int count for every shelf
+ *     int for every denomination count
+ *     long credit, long pending change
+ *     int pending item count, then int product for every item
+ *
+ * All values are big endian and in cents. The snapshot is written to a temporary file, forced to the disk and only
+ * then moved over the old one, so a crash while writing leaves the previous snapshot intact. Restoring maps the whole file at once and restored
+ * machines share one instance of every product.
+ *
+ * Machines aren't thread safe, so write the snapshot from the thread using them, e.g. every few hundred operations
+ */
+public class MachineSnapshot {
+    static final int MAGIC = 0x564D5331;
+    static final int VERSION = 2;
+
+    public static void write(Path path, VendingMachine machine) throws IOException {
+        write(path, Collections.singletonList(machine));
+    }
+
+    public static void write(Path path, List<? extends VendingMachine> machines) throws IOException {
+        List<ProductType> products = new ArrayList<>();
+        Map<ProductType, Integer> productIndexes = new HashMap<>();
+        for (VendingMachine machine : machines) {
+            for (int i = 0; i < machine.getShelfCount(); i++)
+                indexProduct(machine.getProductType(i), products, productIndexes);
+            for (ProductType item : machine.getPendingItems())
+                indexProduct(item, products, productIndexes);
+        }
+        long[] denominations = machines.isEmpty() ? new long[0] : machines.get(0).getCoins().getDenominations();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(machines.size());
+
+            out.writeInt(products.size());
+            for (ProductType product : products) {
+                out.writeLong(product.getPriceMoney().getCents());
+                writeString(out, product.getName());
+                writeString(out, product.getSku());
+            }
+
+            out.writeInt(denominations.length);
+            for (long denomination : denominations)
+                out.writeLong(denomination);
+
+            for (VendingMachine machine : machines) {
+                out.writeInt(machine.getShelfCount());
+                for (int i = 0; i < machine.getShelfCount(); i++) {
+                    out.writeInt(productIndexes.get(machine.getProductType(i)));
+                    out.writeInt(machine.getProductCount(i));
+                }
+
+                CoinInventory coins = machine.getCoins();
+                if (!Arrays.equals(coins.getDenominations(), denominations))
+                    throw new IllegalArgumentException("Machines in a snapshot have to accept the same coins");
+                for (int i = 0; i < coins.size(); i++)
+                    out.writeInt(coins.getCount(i));
+
+                out.writeLong(machine.getCredit().getCents());
+                out.writeLong(machine.getPendingChange().getCents());
+                List<ProductType> items = machine.getPendingItems();
+                out.writeInt(items.size());
+                for (ProductType item : items)
+                    out.writeInt(productIndexes.get(item));
+            }
+            out.flush();
+            // Without it the move can reach the disk before the data, and a crash leaves an empty snapshot
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static VendingMachine read(
+        Path path,
+        VendingDisplay display,
+        ReturnAmountByDenominationsStrategy returnStrategy
+    ) throws IOException {
+        List<VendingMachine> machines = read(path, () -> display, () -> returnStrategy);
+        if (machines.size() != 1)
+            throw new IllegalStateException("Snapshot holds " + machines.size() + " machines instead of one");
+        return machines.get(0);
+    }
+
+    /**
+     * @param displays called for every restored machine
+     * @param strategies called for every restored machine
+     */
+    public static List<VendingMachine> read(
+        Path path,
+        Supplier<? extends VendingDisplay> displays,
+        Supplier<? extends ReturnAmountByDenominationsStrategy> strategies
+    ) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IllegalStateException("Snapshot is too big to map");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            return read(buffer, displays, strategies);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Snapshot is truncated", e);
+        }
+    }
+
+    private static List<VendingMachine> read(
+        ByteBuffer buffer,
+        Supplier<? extends VendingDisplay> displays,
+        Supplier<? extends ReturnAmountByDenominationsStrategy> strategies
+    ) throws IOException {
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC)
+            throw new IllegalStateException("Not a vending machine snapshot");
+        int version = buffer.getInt();
+        if (version != 1 && version != VERSION)
+            throw new IllegalStateException("Unsupported snapshot version " + version);
+        int machineCount = buffer.getInt();
+
+        ProductType[] products = new ProductType[buffer.getInt()];
+        for (int i = 0; i < products.length; i++) {
+            Money price = Money.ofCents(buffer.getLong());
+            String name = readString(buffer);
+            String sku = version == 1 ? name : readString(buffer);
+            products[i] = new ProductType(price, name, sku);
+        }
+
+        long[] denominations = new long[buffer.getInt()];
+        for (int i = 0; i < denominations.length; i++)
+            denominations[i] = buffer.getLong();
+
+        List<VendingMachine> machines = new ArrayList<>(machineCount);
+        int[] counts = new int[denominations.length];
+        for (int m = 0; m < machineCount; m++) {
+            int shelfCount = buffer.getInt();
+            List<VendingShelf> shelves = new ArrayList<>(shelfCount);
+            for (int i = 0; i < shelfCount; i++) {
+                ProductType product = readProduct(buffer, products);
+                shelves.add(new VendingShelf(product, buffer.getInt()));
+            }
+
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = buffer.getInt();
+
+            Money credit = Money.ofCents(buffer.getLong());
+            Money pendingChange = Money.ofCents(buffer.getLong());
+            int itemCount = buffer.getInt();
+            List<ProductType> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++)
+                items.add(readProduct(buffer, products));
+
+            machines.add(new VendingMachine(
+                displays.get(),
+                strategies.get(),
+                shelves,
+                new CoinInventory(denominations, counts),
+                credit,
+                items,
+                pendingChange
+            ));
+        }
+        return machines;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ProductType readProduct(ByteBuffer buffer, ProductType[] products) throws IOException {
+        int index = buffer.getInt();
+        if (index < 0 || index >= products.length)
+            throw new IOException("Corrupt snapshot, product " + index + " of " + products.length);
+        return products[index];
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void indexProduct(ProductType product, List<ProductType> products, Map<ProductType, Integer> indexes) {
+        if (!indexes.containsKey(product)) {
+            indexes.put(product, products.size());
+            products.add(product);
+        }
+    }
+}
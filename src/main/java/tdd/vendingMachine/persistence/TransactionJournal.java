@@ -0,0 +1,133 @@
+package tdd.vendingMachine.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Append-only log of fixed size records written into a memory-mapped file.
+ *
+ * File starts with a header (magic, format version), then every record takes RECORD_SIZE bytes:
+ *   byte type, 3 bytes of padding, int argument, long value
+ * The file is extended and mapped in chunks filled with zeros, so the first record with type 0 marks the end of
+ * the log. The type byte is written last, so a record torn by a crash is never read back as a valid one.
+ *
+ * A written record is in the page cache right away and survives the process dying. Forcing it to the disk is
+ * expensive, so it's done for a group of records at once, every syncEvery records (and on sync/close)
+ */
+public class TransactionJournal implements Closeable {
+    static final int MAGIC = 0x564D4A31;
+    // 2: commands are written before they run, failed ones are followed by FAILED
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 16;
+    private static final int CHUNK_SIZE = 1 << 24;
+
+    private final FileChannel channel;
+    private final int syncEvery;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long recordCount;
+    private int unsynced;
+
+    private TransactionJournal(FileChannel channel, int syncEvery) {
+        this.channel = channel;
+        this.syncEvery = syncEvery;
+    }
+
+    /**
+     * Opens the journal for appending, creating it if needed
+     *
+     * @param syncEvery how many records are forced to the disk together, 0 to force only on sync and close
+     */
+    public static TransactionJournal open(Path path, int syncEvery) throws IOException {
+        if (syncEvery < 0)
+            throw new IllegalArgumentException("Sync group can't be negative");
+        FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        TransactionJournal journal = new TransactionJournal(channel, syncEvery);
+        try {
+            journal.mapChunk(0);
+            if (journal.chunk.getInt(0) == 0) {
+                journal.chunk.putInt(0, MAGIC);
+                journal.chunk.putInt(4, VERSION);
+            } else {
+                checkHeader(journal.chunk.getInt(0), journal.chunk.getInt(4));
+            }
+            journal.seekEnd();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    public void append(JournalRecordType type, int argument, long value) throws IOException {
+        if (!chunk.hasRemaining())
+            mapChunk(chunkStart + CHUNK_SIZE);
+
+        int position = chunk.position();
+        chunk.putInt(position + 4, argument);
+        chunk.putLong(position + 8, value);
+        chunk.put(position, type.getCode());
+        chunk.position(position + RECORD_SIZE);
+
+        recordCount++;
+        if (syncEvery > 0 && ++unsynced >= syncEvery)
+            sync();
+    }
+
+    /**
+     * Forces everything written so far to the disk
+     */
+    public void sync() {
+        chunk.force();
+        unsynced = 0;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    static void checkHeader(int magic, int version) {
+        if (magic != MAGIC)
+            throw new IllegalStateException("Not a vending machine journal");
+        if (version != VERSION)
+            throw new IllegalStateException("Unsupported journal version " + version);
+    }
+
+    private void mapChunk(long start) throws IOException {
+        if (chunk != null)
+            chunk.force();
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, CHUNK_SIZE);
+        chunkStart = start;
+        chunk.position(start == 0 ? HEADER_SIZE : 0);
+    }
+
+    private void seekEnd() throws IOException {
+        while (true) {
+            while (chunk.hasRemaining()) {
+                if (chunk.get(chunk.position()) == 0)
+                    return;
+                chunk.position(chunk.position() + RECORD_SIZE);
+                recordCount++;
+            }
+            if (channel.size() <= chunkStart + CHUNK_SIZE)
+                return;
+            mapChunk(chunkStart + CHUNK_SIZE);
+        }
+    }
+}
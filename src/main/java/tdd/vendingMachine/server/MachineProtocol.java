@@ -0,0 +1,119 @@
+package tdd.vendingMachine.server;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Fixed width binary protocol of MachineServer, big endian. Every request gets exactly one response, in the order the
+ * requests were sent on the connection, so a client can send many requests before reading any response.
+ *
+ * Request, 16 bytes:
+ *   opcode (1), reserved (1), machine (2), argument (4), tag (8)
+ * Response, 32 bytes:
+ *   opcode (1), status (1), machine (2), argument (4), tag (8), first (8), second (8)
+ *
+ * A request the machine failed on with an error gets INTERNAL_ERROR, its state is then unknown.
+ * The tag is copied from the request, the server doesn't look at it. Arguments and results of every opcode:
+ *   INSERT_COIN     argument: coin in cents, BAD_REQUEST unless positive
+ *   SELECT_SHELF    argument: shelf number
+ *   CANCEL_ORDER, QUERY_STATE
+ *   all four answer the state after the command, argument: items waiting to be received, first: credit in cents,
+ *   second: change waiting to be received in cents
+ *   RECEIVE_ITEM    answers argument: shelf number of the item or -1 if there's none, first: its price in cents
+ *   RECEIVE_CHANGE  answers first: the change in cents
+ */
+public final class MachineProtocol {
+    public static final int REQUEST_SIZE = 16;
+    public static final int RESPONSE_SIZE = 32;
+
+    public static final byte INSERT_COIN = 1;
+    public static final byte SELECT_SHELF = 2;
+    public static final byte CANCEL_ORDER = 3;
+    public static final byte RECEIVE_ITEM = 4;
+    public static final byte RECEIVE_CHANGE = 5;
+    public static final byte QUERY_STATE = 6;
+
+    public static final byte OK = 0;
+    public static final byte UNKNOWN_MACHINE = 1;
+    public static final byte BAD_REQUEST = 2;
+    public static final byte INTERNAL_ERROR = 3;
+
+    public static final int NO_ITEM = -1;
+
+    private static final int OPCODE = 0;
+    private static final int STATUS = 1;
+    private static final int MACHINE = 2;
+    private static final int ARGUMENT = 4;
+    private static final int TAG = 8;
+    private static final int FIRST = 16;
+    private static final int SECOND = 24;
+
+    private MachineProtocol() {
+    }
+
+    /**
+     * Appends a request at the buffer's position
+     */
+    public static void putRequest(ByteBuffer buffer, byte opcode, int machine, int argument, long tag) {
+        int start = buffer.position();
+        buffer.put(start + OPCODE, opcode);
+        buffer.put(start + STATUS, (byte) 0);
+        buffer.putShort(start + MACHINE, (short) machine);
+        buffer.putInt(start + ARGUMENT, argument);
+        buffer.putLong(start + TAG, tag);
+        buffer.position(start + REQUEST_SIZE);
+    }
+
+    /**
+     * Appends a response at the buffer's position
+     */
+    public static void putResponse(
+        ByteBuffer buffer,
+        byte opcode,
+        byte status,
+        int machine,
+        int argument,
+        long tag,
+        long first,
+        long second
+    ) {
+        int start = buffer.position();
+        buffer.put(start + OPCODE, opcode);
+        buffer.put(start + STATUS, status);
+        buffer.putShort(start + MACHINE, (short) machine);
+        buffer.putInt(start + ARGUMENT, argument);
+        buffer.putLong(start + TAG, tag);
+        buffer.putLong(start + FIRST, first);
+        buffer.putLong(start + SECOND, second);
+        buffer.position(start + RESPONSE_SIZE);
+    }
+
+    // Fields of a request or response starting at the offset, the buffer's position is left alone
+
+    public static byte getOpcode(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + OPCODE);
+    }
+
+    public static byte getStatus(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + STATUS);
+    }
+
+    public static int getMachine(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + MACHINE) & 0xFFFF;
+    }
+
+    public static int getArgument(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + ARGUMENT);
+    }
+
+    public static long getTag(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + TAG);
+    }
+
+    public static long getFirst(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + FIRST);
+    }
+
+    public static long getSecond(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + SECOND);
+    }
+}
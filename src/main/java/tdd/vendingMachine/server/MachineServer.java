@@ -0,0 +1,258 @@
+package tdd.vendingMachine.server;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ * Serves many machines to test rigs and controller boards over TCP, speaking MachineProtocol.
+ * A single thread with a selector handles every connection and every machine, so machines are used from one thread
+ * like they expect, and a request names the machine it's for.
+ *  - Every connection has a direct input and output buffer, the socket reads into and writes from them without
+ *    copying through the heap, requests are decoded and responses encoded in place
+ *  - All complete requests read at once are answered before writing, so pipelined requests are answered in batches.
+ *    When the output buffer is full the rest waits in the input, and reading stops until the client takes the
+ *    responses
+ * Display output stays on the machines' displays, the protocol only carries state.
+ * Java 8 has no Unix domain socket channels, so the server listens on TCP, binding it to the loopback keeps it local
+ */
+public class MachineServer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final VendingMachine[] machines;
+    private final Selector selector;
+    private final ServerSocketChannel acceptor;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param machines served machines, a request's machine is the index in the list
+     * @param address where to listen, port 0 picks a free one, see getAddress
+     */
+    public MachineServer(List<VendingMachine> machines, InetSocketAddress address) throws IOException {
+        if (machines.size() > 1 << 16)
+            throw new IllegalArgumentException("At most 65536 machines, was " + machines.size());
+        this.machines = machines.toArray(new VendingMachine[0]);
+        this.selector = Selector.open();
+        this.acceptor = ServerSocketChannel.open();
+        acceptor.bind(address);
+        acceptor.configureBlocking(false);
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.thread = new Thread(this::run, "vending-machine-server");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) acceptor.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops serving and closes every connection, the machines are left as they are
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable())
+                            accept();
+                        else
+                            serve(key);
+                    } catch (IOException e) {
+                        // Only the connection is lost, the others go on
+                        closeConnection(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (SelectionKey key : selector.keys())
+                closeConnection(key);
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = acceptor.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void serve(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+
+        if (key.isReadable() && channel.read(connection.in) < 0) {
+            closeConnection(key);
+            return;
+        }
+        // Requests left behind by a full output are answered as soon as it's written out
+        do {
+            connection.answer();
+            connection.out.flip();
+            channel.write(connection.out);
+            connection.out.compact();
+        } while (connection.out.position() == 0 && connection.in.position() >= MachineProtocol.REQUEST_SIZE);
+
+        boolean pendingOutput = connection.out.position() > 0;
+        boolean inputFull = !connection.in.hasRemaining();
+        key.interestOps((pendingOutput ? SelectionKey.OP_WRITE : 0) | (inputFull ? 0 : SelectionKey.OP_READ));
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Nothing left to do with it
+        }
+    }
+
+    private class Connection {
+        // Both are kept in write mode between events
+        final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * Answers every complete request in the input that has room in the output
+         */
+        void answer() {
+            int end = in.position();
+            int offset = 0;
+            while (end - offset >= MachineProtocol.REQUEST_SIZE && out.remaining() >= MachineProtocol.RESPONSE_SIZE) {
+                execute(offset);
+                offset += MachineProtocol.REQUEST_SIZE;
+            }
+            in.flip();
+            in.position(offset);
+            in.compact();
+        }
+
+        private void execute(int offset) {
+            byte opcode = MachineProtocol.getOpcode(in, offset);
+            int machineNumber = MachineProtocol.getMachine(in, offset);
+            int argument = MachineProtocol.getArgument(in, offset);
+            long tag = MachineProtocol.getTag(in, offset);
+
+            if (machineNumber >= machines.length) {
+                MachineProtocol.putResponse(out, opcode, MachineProtocol.UNKNOWN_MACHINE, machineNumber, 0, tag, 0, 0);
+                return;
+            }
+            VendingMachine machine = machines[machineNumber];
+            try {
+                switch (opcode) {
+                    case MachineProtocol.INSERT_COIN:
+                        // Unknown coins are dropped back as change, a coin of no value would take change away
+                        if (argument <= 0)
+                            throw new IllegalArgumentException("Coin has to be positive: " + argument);
+                        machine.insertCoin(Money.ofCents(argument));
+                        putState(opcode, machineNumber, tag, machine);
+                        break;
+                    case MachineProtocol.SELECT_SHELF:
+                        machine.selectShelf(argument);
+                        putState(opcode, machineNumber, tag, machine);
+                        break;
+                    case MachineProtocol.CANCEL_ORDER:
+                        machine.cancelOrder();
+                        putState(opcode, machineNumber, tag, machine);
+                        break;
+                    case MachineProtocol.QUERY_STATE:
+                        putState(opcode, machineNumber, tag, machine);
+                        break;
+                    case MachineProtocol.RECEIVE_ITEM:
+                        ProductType item = machine.receiveItem();
+                        MachineProtocol.putResponse(
+                            out,
+                            opcode,
+                            MachineProtocol.OK,
+                            machineNumber,
+                            item == null ? MachineProtocol.NO_ITEM : shelfOf(machine, item),
+                            tag,
+                            item == null ? 0 : item.getPriceMoney().getCents(),
+                            0
+                        );
+                        break;
+                    case MachineProtocol.RECEIVE_CHANGE:
+                        long change = machine.receiveChangeMoney().getCents();
+                        MachineProtocol.putResponse(out, opcode, MachineProtocol.OK, machineNumber, 0, tag, change, 0);
+                        break;
+                    default:
+                        MachineProtocol.putResponse(out, opcode, MachineProtocol.BAD_REQUEST, machineNumber, 0, tag, 0, 0);
+                }
+            } catch (RuntimeException e) {
+                // E.g. a shelf the machine doesn't have
+                MachineProtocol.putResponse(out, opcode, MachineProtocol.BAD_REQUEST, machineNumber, 0, tag, 0, 0);
+            } catch (Throwable e) {
+                // Errors of one machine, e.g. failing to return money, mustn't take the server down for all of them
+                MachineProtocol.putResponse(out, opcode, MachineProtocol.INTERNAL_ERROR, machineNumber, 0, tag, 0, 0);
+            }
+        }
+
+        private void putState(byte opcode, int machineNumber, long tag, VendingMachine machine) {
+            MachineProtocol.putResponse(
+                out,
+                opcode,
+                MachineProtocol.OK,
+                machineNumber,
+                machine.getPendingItemCount(),
+                tag,
+                machine.getCredit().getCents(),
+                machine.getPendingChange().getCents()
+            );
+        }
+
+        private int shelfOf(VendingMachine machine, ProductType item) {
+            for (int i = 0; i < machine.getShelfCount(); i++)
+                if (machine.getProductType(i).equals(item))
+                    return i;
+            return MachineProtocol.NO_ITEM;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package tdd.vendingMachine.simulation;
+
+import tdd.vendingMachine.Configuration;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/*
+ * Runs many independent machines with simulated customers on a fork-join pool.
+ * Every machine gets its own random generator seeded from the fleet seed and the machine number, and machines don't
+ * share anything, so the statistics for a given seed are the same no matter how many threads run the simulation
+ */
+public class FleetSimulation {
+    private static final int MACHINES_PER_TASK = 16;
+    // Customer with an endless supply of rejected coins would never leave
+    private static final int MAX_COINS_PER_CUSTOMER = 100;
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final Supplier<VendingMachine> machineFactory;
+    private final WorkloadProfile profile;
+
+    public FleetSimulation(WorkloadProfile profile) {
+        this(
+            () -> new VendingMachine(
+                new NullVendingDisplay(),
+                new GreedyReturnAmountStrategy(),
+                Configuration.getDefaultShelfSet(),
+                Configuration.getDefaultCoinSet()
+            ),
+            profile
+        );
+    }
+
+    /**
+     * @param machineFactory creates a fresh machine for every simulated one, called from pool threads. Machines have
+     * to be deterministic (see VendingMachine.isDeterministic), or the statistics of a seed depend on the load
+     */
+    public FleetSimulation(Supplier<VendingMachine> machineFactory, WorkloadProfile profile) {
+        this.machineFactory = machineFactory;
+        this.profile = profile;
+    }
+
+    public SimulationResult run(int machines, long seed) {
+        return run(machines, seed, ForkJoinPool.commonPool());
+    }
+
+    public SimulationResult run(int machines, long seed, ForkJoinPool pool) {
+        if (machines <= 0)
+            throw new IllegalArgumentException("At least one machine needed");
+        long start = System.nanoTime();
+        SimulationStatistics statistics = pool.invoke(new MachinesTask(seed, 0, machines));
+        return new SimulationResult(statistics, System.nanoTime() - start);
+    }
+
+    SimulationStatistics simulateMachine(long fleetSeed, int machineNumber) {
+        SplittableRandom random = new SplittableRandom(fleetSeed + SEED_STEP * (machineNumber + 1));
+        VendingMachine machine = machineFactory.get();
+        if (!machine.isDeterministic())
+            throw new IllegalArgumentException("Simulated machines need a deterministic change strategy");
+        SimulationStatistics statistics = new SimulationStatistics();
+        machine.setListener(statistics);
+
+        double time = nextArrival(random, 0);
+        while (time < profile.getHours()) {
+            serveCustomer(machine, random, statistics);
+            time = nextArrival(random, time);
+        }
+        statistics.machineFinished();
+        return statistics;
+    }
+
+    private double nextArrival(SplittableRandom random, double time) {
+        return time - Math.log(1 - random.nextDouble()) / profile.getCustomersPerHour();
+    }
+
+    private void serveCustomer(VendingMachine machine, SplittableRandom random, SimulationStatistics statistics) {
+        statistics.customerArrived();
+        long finishedOrders = statistics.getSales() + statistics.getCancels();
+        long stockOuts = statistics.getStockOuts();
+
+        machine.selectShelf(profile.pickShelf(random.nextDouble()));
+        statistics.operationExecuted();
+
+        // A customer facing an empty shelf walks away, there's no credit to cancel and it's a stock out, not a cancel
+        if (statistics.getStockOuts() == stockOuts) {
+            for (int i = 0; statistics.getSales() + statistics.getCancels() == finishedOrders; i++) {
+                if (i == MAX_COINS_PER_CUSTOMER || random.nextDouble() < profile.getCancelProbability()) {
+                    machine.cancelOrder();
+                    statistics.operationExecuted();
+                    break;
+                }
+                machine.insertCoin(profile.pickCoin(random.nextDouble()));
+                statistics.operationExecuted();
+            }
+        }
+
+        while (machine.receiveItem() != null)
+            statistics.operationExecuted();
+        machine.receiveChangeMoney();
+        statistics.operationExecuted();
+    }
+
+    private class MachinesTask extends RecursiveTask<SimulationStatistics> {
+        private static final long serialVersionUID = 1L;
+
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        MachinesTask(long seed, int from, int to) {
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationStatistics compute() {
+            if (to - from <= MACHINES_PER_TASK) {
+                SimulationStatistics result = new SimulationStatistics();
+                for (int machine = from; machine < to; machine++)
+                    result = result.merge(simulateMachine(seed, machine));
+                return result;
+            }
+
+            int middle = (from + to) >>> 1;
+            MachinesTask left = new MachinesTask(seed, from, middle);
+            left.fork();
+            SimulationStatistics right = new MachinesTask(seed, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package tdd.vendingMachine.simulation;
+
+import tdd.vendingMachine.CoinInventory;
+
+import java.util.Arrays;
+
+public class FloatOptimizationResult {
+    private final CoinInventory coins;
+    private final double failureRate;
+    private final int evaluated;
+    private final int pruned;
+
+    FloatOptimizationResult(CoinInventory coins, double failureRate, int evaluated, int pruned) {
+        this.coins = coins;
+        this.failureRate = failureRate;
+        this.evaluated = evaluated;
+        this.pruned = pruned;
+    }
+
+    public boolean isFound() {
+        return coins != null;
+    }
+
+    /**
+     * @return cheapest float meeting the target, null if none within the searched counts does
+     */
+    public CoinInventory getCoins() {
+        return coins;
+    }
+
+    /**
+     * @return change failures per customer with the found float
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * @return floats simulated, some of them only until they exceeded the allowed failures
+     */
+    public int getEvaluated() {
+        return evaluated;
+    }
+
+    /**
+     * @return floats skipped because a bigger float was already known to fail
+     */
+    public int getPruned() {
+        return pruned;
+    }
+
+    @Override
+    public String toString() {
+        return (coins == null ? "not found" : "counts=" + Arrays.toString(coins.getCounts()) +
+            " value=" + coins.getTotal()) +
+            String.format(", failureRate=%.4f, evaluated=%d, pruned=%d", failureRate, evaluated, pruned);
+    }
+}
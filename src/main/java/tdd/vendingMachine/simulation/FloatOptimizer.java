@@ -0,0 +1,321 @@
+package tdd.vendingMachine.simulation;
+
+import tdd.vendingMachine.CoinInventory;
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.VendingMachineListener;
+import tdd.vendingMachine.VendingShelf;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/*
+ * Finds the cheapest coin float (counts of every denomination, cheapest by total value) that keeps change failures
+ * per customer at or below a target.
+ *  - Customers are drawn once per machine-day (see RecordedDay) and every float is evaluated on the very same
+ *    customers, so floats are compared on equal terms and the drawing isn't repeated
+ *  - Floats are tried from the cheapest one, a batch at a time in parallel on a fork-join pool. The first batch
+ *    with a float meeting the target gives the answer
+ *  - A float is assumed never to fail more than a smaller one (close enough in practice, more coins can only make
+ *    more change possible), so a float not bigger than a failed one in any denomination is skipped without
+ *    simulating it. To have such bounds from the start, every denomination is first searched on its own with
+ *    plenty of all the other coins, which gives the fewest coins of it any float meeting the target needs
+ *  - The number of customers is known up front, so a simulation stops as soon as the failures exceed the target
+ */
+public class FloatOptimizer {
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+    private static final int MAX_CANDIDATES = 1 << 24;
+
+    private final List<VendingShelf> shelves;
+    private final long[] denominations;
+    private final WorkloadProfile profile;
+    private final Supplier<? extends ReturnAmountByDenominationsStrategy> strategies;
+
+    /**
+     * @param shelves stock every simulated machine starts with
+     * @param denominations coins the machine accepts, in cents
+     * @param strategies strategy the machines will use, called once per evaluated float. It has to be deterministic
+     * (see ReturnAmountByDenominationsStrategy.isDeterministic), floats are compared on the same customers only then
+     */
+    public FloatOptimizer(
+        List<VendingShelf> shelves,
+        long[] denominations,
+        WorkloadProfile profile,
+        Supplier<? extends ReturnAmountByDenominationsStrategy> strategies
+    ) {
+        this.shelves = new ArrayList<>(shelves);
+        this.denominations = denominations.clone();
+        this.profile = profile;
+        this.strategies = strategies;
+    }
+
+    public FloatOptimizationResult optimize(double targetFailureRate, int maxCoins, int machines, long seed) {
+        return optimize(targetFailureRate, maxCoins, machines, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param targetFailureRate allowed "can't return change" events per customer
+     * @param maxCoins most coins of a single denomination to consider
+     * @param machines machine-days every float is evaluated on
+     */
+    public FloatOptimizationResult optimize(
+        double targetFailureRate,
+        int maxCoins,
+        int machines,
+        long seed,
+        ForkJoinPool pool
+    ) {
+        if (maxCoins < 0 || machines <= 0)
+            throw new IllegalArgumentException("Need a non negative coin limit and at least one machine");
+        double space = Math.pow(maxCoins + 1, denominations.length);
+        if (space > MAX_CANDIDATES)
+            throw new IllegalArgumentException("Too many floats to search: " + (long) space);
+
+        RecordedDay[] days = recordDays(machines, seed);
+        long customers = 0;
+        for (RecordedDay day : days)
+            customers += day.getCustomerCount();
+        long allowedFailures = (long) Math.floor(targetFailureRate * customers);
+
+        int[] biggest = new int[denominations.length];
+        Arrays.fill(biggest, maxCoins);
+        if (pool.invoke(new Evaluation(biggest, days, allowedFailures)) > allowedFailures)
+            return new FloatOptimizationResult(null, Double.NaN, 1, 0);
+
+        List<int[]> failed = new ArrayList<>();
+        int evaluated = 1;
+        List<Bound> bounds = new ArrayList<>(denominations.length);
+        for (int i = 0; i < denominations.length; i++)
+            bounds.add(new Bound(i, maxCoins, days, allowedFailures));
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(bounds);
+                return null;
+            }
+        });
+        for (Bound bound : bounds) {
+            evaluated += bound.evaluated;
+            if (bound.getRawResult() != null)
+                addFailed(bound.getRawResult(), failed);
+        }
+
+        long[] candidates = sortedCandidates(maxCoins, (int) space);
+        int pruned = 0;
+        int batchSize = 2 * pool.getParallelism();
+
+        int next = 0;
+        while (next < candidates.length) {
+            List<Evaluation> batch = new ArrayList<>(batchSize);
+            while (next < candidates.length && batch.size() < batchSize) {
+                int[] counts = decode(candidates[next++], maxCoins);
+                if (isDominated(counts, failed))
+                    pruned++;
+                else
+                    batch.add(new Evaluation(counts, days, allowedFailures));
+            }
+            if (batch.isEmpty())
+                break;
+
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(batch);
+                    return null;
+                }
+            });
+            evaluated += batch.size();
+
+            // Batch is sorted by value, so the first float meeting the target is the cheapest one
+            for (Evaluation evaluation : batch) {
+                if (evaluation.getRawResult() <= allowedFailures)
+                    return new FloatOptimizationResult(
+                        new CoinInventory(denominations, evaluation.counts),
+                        evaluation.getRawResult() / (double) customers,
+                        evaluated,
+                        pruned
+                    );
+            }
+            for (Evaluation evaluation : batch)
+                addFailed(evaluation.counts, failed);
+        }
+        return new FloatOptimizationResult(null, Double.NaN, evaluated, pruned);
+    }
+
+    /**
+     * Simulates a single float on the same customers optimize would use for the machines and seed
+     *
+     * @return change failures per customer
+     */
+    public double evaluate(int[] counts, int machines, long seed) {
+        if (counts.length != denominations.length)
+            throw new IllegalArgumentException("Every denomination needs a count");
+        RecordedDay[] days = recordDays(machines, seed);
+        long customers = 0;
+        for (RecordedDay day : days)
+            customers += day.getCustomerCount();
+        Evaluation evaluation = new Evaluation(counts.clone(), days, Long.MAX_VALUE);
+        return evaluation.invoke() / (double) customers;
+    }
+
+    private RecordedDay[] recordDays(int machines, long seed) {
+        long[] prices = new long[shelves.size()];
+        for (int i = 0; i < prices.length; i++)
+            prices[i] = shelves.get(i).getPriceMoney().getCents();
+
+        RecordedDay[] result = new RecordedDay[machines];
+        for (int machine = 0; machine < machines; machine++) {
+            SplittableRandom random = new SplittableRandom(seed + SEED_STEP * (machine + 1));
+            result[machine] = RecordedDay.record(profile, prices, denominations, random);
+        }
+        return result;
+    }
+
+    /**
+     * @return every float as its value in the high bits and its mixed radix number in the low 24 bits, sorted
+     */
+    private long[] sortedCandidates(int maxCoins, int count) {
+        long[] result = new long[count];
+        int[] counts = new int[denominations.length];
+        for (int number = 0; number < count; number++) {
+            long value = 0;
+            int rest = number;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = rest % (maxCoins + 1);
+                rest /= maxCoins + 1;
+                value += counts[i] * denominations[i];
+            }
+            result[number] = value << 24 | number;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int[] decode(long candidate, int maxCoins) {
+        int[] result = new int[denominations.length];
+        int rest = (int) (candidate & (MAX_CANDIDATES - 1));
+        for (int i = 0; i < result.length; i++) {
+            result[i] = rest % (maxCoins + 1);
+            rest /= maxCoins + 1;
+        }
+        return result;
+    }
+
+    private static boolean isDominated(int[] counts, List<int[]> failed) {
+        for (int[] bigger : failed)
+            if (isAtMost(counts, bigger))
+                return true;
+        return false;
+    }
+
+    /**
+     * Keeps only failed floats not contained in another failed one
+     */
+    private static void addFailed(int[] counts, List<int[]> failed) {
+        if (isDominated(counts, failed))
+            return;
+        failed.removeIf(smaller -> isAtMost(smaller, counts));
+        failed.add(counts);
+    }
+
+    private static boolean isAtMost(int[] counts, int[] other) {
+        for (int i = 0; i < counts.length; i++)
+            if (counts[i] > other[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Finds the most coins of one denomination that still fail with the most coins of all the others
+     */
+    private class Bound extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int denomination;
+        private final int maxCoins;
+        private final RecordedDay[] days;
+        private final long allowedFailures;
+        private int evaluated;
+
+        Bound(int denomination, int maxCoins, RecordedDay[] days, long allowedFailures) {
+            this.denomination = denomination;
+            this.maxCoins = maxCoins;
+            this.days = days;
+            this.allowedFailures = allowedFailures;
+        }
+
+        /**
+         * @return the failing float, null if the target is met without any of the coins
+         */
+        @Override
+        protected int[] compute() {
+            int[] counts = new int[denominations.length];
+            Arrays.fill(counts, maxCoins);
+            // maxCoins is known to meet the target
+            int low = 0;
+            int high = maxCoins;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                counts[denomination] = middle;
+                evaluated++;
+                if (new Evaluation(counts.clone(), days, allowedFailures).invoke() <= allowedFailures)
+                    high = middle;
+                else
+                    low = middle + 1;
+            }
+            if (low == 0)
+                return null;
+            counts[denomination] = low - 1;
+            return counts;
+        }
+    }
+
+    /**
+     * Counts change failures of one float over all recorded days, stops right after exceeding the allowed ones
+     */
+    private class Evaluation extends RecursiveTask<Long> implements VendingMachineListener {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] counts;
+        private final RecordedDay[] days;
+        private final long allowedFailures;
+        private long failures;
+
+        Evaluation(int[] counts, RecordedDay[] days, long allowedFailures) {
+            this.counts = counts;
+            this.days = days;
+            this.allowedFailures = allowedFailures;
+        }
+
+        @Override
+        protected Long compute() {
+            ReturnAmountByDenominationsStrategy strategy = strategies.get();
+            if (!strategy.isDeterministic())
+                throw new IllegalArgumentException("Floats can only be compared with a deterministic change strategy");
+            CoinInventory coins = new CoinInventory(denominations, counts);
+            for (RecordedDay day : days) {
+                VendingMachine machine = new VendingMachine(new NullVendingDisplay(), strategy, shelves, coins);
+                machine.setListener(this);
+                for (int customer = 0; customer < day.getCustomerCount(); customer++) {
+                    day.replay(customer, machine);
+                    if (failures > allowedFailures)
+                        return failures;
+                }
+            }
+            return failures;
+        }
+
+        @Override
+        public void onChangeFailure(int shelfNumber, Money change) {
+            failures++;
+        }
+    }
+}
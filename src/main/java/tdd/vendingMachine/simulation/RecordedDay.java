@@ -0,0 +1,126 @@
+package tdd.vendingMachine.simulation;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.VendingMachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ * Customers of one machine for one simulated period, drawn once and replayed against any machine. Customers decide
+ * everything up front: the shelf, the coins they'll insert (until they've paid the price with coins the machine
+ * accepts) and after how many coins they give up, so every machine replaying the day sees exactly the same customers
+ */
+class RecordedDay {
+    static final int NEVER = Integer.MAX_VALUE;
+    private static final int MAX_COINS_PER_CUSTOMER = 100;
+
+    private final int[] shelves;
+    // Coins of customer i are coins[coinsStart[i]..coinsStart[i + 1])
+    private final int[] coinsStart;
+    private final Money[] coins;
+    private final boolean[] accepted;
+    private final int[] giveUpAfter;
+
+    private RecordedDay(int[] shelves, int[] coinsStart, Money[] coins, boolean[] accepted, int[] giveUpAfter) {
+        this.shelves = shelves;
+        this.coinsStart = coinsStart;
+        this.coins = coins;
+        this.accepted = accepted;
+        this.giveUpAfter = giveUpAfter;
+    }
+
+    /**
+     * @param prices price of every shelf in cents
+     * @param accepted denominations accepted by the machine, in cents
+     */
+    static RecordedDay record(WorkloadProfile profile, long[] prices, long[] accepted, SplittableRandom random) {
+        List<Integer> shelves = new ArrayList<>();
+        List<Integer> coinsStart = new ArrayList<>();
+        List<Money> coins = new ArrayList<>();
+        List<Boolean> acceptedCoins = new ArrayList<>();
+        List<Integer> giveUpAfter = new ArrayList<>();
+
+        double time = nextArrival(profile, random, 0);
+        while (time < profile.getHours()) {
+            int shelf = profile.pickShelf(random.nextDouble());
+            shelves.add(shelf);
+            coinsStart.add(coins.size());
+
+            int giveUp = NEVER;
+            long paid = 0;
+            for (int i = 0; paid < prices[shelf] && i < MAX_COINS_PER_CUSTOMER; i++) {
+                if (giveUp == NEVER && random.nextDouble() < profile.getCancelProbability())
+                    giveUp = i;
+                Money coin = profile.pickCoin(random.nextDouble());
+                boolean isAccepted = isAccepted(coin, accepted);
+                coins.add(coin);
+                acceptedCoins.add(isAccepted);
+                if (isAccepted)
+                    paid += coin.getCents();
+            }
+            giveUpAfter.add(giveUp);
+            time = nextArrival(profile, random, time);
+        }
+        coinsStart.add(coins.size());
+
+        boolean[] acceptedArray = new boolean[acceptedCoins.size()];
+        for (int i = 0; i < acceptedArray.length; i++)
+            acceptedArray[i] = acceptedCoins.get(i);
+        return new RecordedDay(
+            toArray(shelves),
+            toArray(coinsStart),
+            coins.toArray(new Money[0]),
+            acceptedArray,
+            toArray(giveUpAfter)
+        );
+    }
+
+    int getCustomerCount() {
+        return shelves.length;
+    }
+
+    /**
+     * Sends the customer to the machine and takes whatever it dropped
+     */
+    void replay(int customer, VendingMachine machine) {
+        int shelf = shelves[customer];
+        if (machine.getProductCount(shelf) == 0) {
+            machine.selectShelf(shelf);
+            machine.cancelOrder();
+        } else {
+            machine.selectShelf(shelf);
+            int coinCount = coinsStart[customer + 1] - coinsStart[customer];
+            for (int i = 0; ; i++) {
+                if (i == coinCount || i == giveUpAfter[customer]) {
+                    machine.cancelOrder();
+                    break;
+                }
+                int coin = coinsStart[customer] + i;
+                machine.insertCoin(coins[coin]);
+                // Accepted coin leaves no credit only if it ended the purchase, with a sale or returned money
+                if (accepted[coin] && machine.getCredit().equals(Money.ZERO))
+                    break;
+            }
+        }
+        machine.receiveItems();
+        machine.receiveChangeMoney();
+    }
+
+    private static boolean isAccepted(Money coin, long[] accepted) {
+        return Arrays.stream(accepted).anyMatch(denomination -> denomination == coin.getCents());
+    }
+
+    private static double nextArrival(WorkloadProfile profile, SplittableRandom random, double time) {
+        return time - Math.log(1 - random.nextDouble()) / profile.getCustomersPerHour();
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = values.get(i);
+        return result;
+    }
+}
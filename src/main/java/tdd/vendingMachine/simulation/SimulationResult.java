@@ -0,0 +1,36 @@
+package tdd.vendingMachine.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+public class SimulationResult {
+    private final SimulationStatistics statistics;
+    private final long elapsedNanos;
+
+    SimulationResult(SimulationStatistics statistics, long elapsedNanos) {
+        this.statistics = statistics;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return statistics of the whole fleet, reproducible for the same seed
+     */
+    public SimulationStatistics getStatistics() {
+        return statistics;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return machine calls per second of wall time, depends on the hardware
+     */
+    public double getOperationsPerSecond() {
+        return statistics.getOperations() * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1);
+    }
+
+    @Override
+    public String toString() {
+        return statistics + String.format(", ops/sec=%.0f", getOperationsPerSecond());
+    }
+}
@@ -0,0 +1,158 @@
+package tdd.vendingMachine.simulation;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.ProductType;
+import tdd.vendingMachine.VendingMachineListener;
+
+/**
+ * Counters of one simulated machine, or of many merged together
+ */
+public class SimulationStatistics implements VendingMachineListener {
+    private long machines;
+    private long customers;
+    private long operations;
+    private long sales;
+    private long revenueCents;
+    private long cancels;
+    private long changeFailures;
+    private long changeTimeouts;
+    private long stockOuts;
+
+    @Override
+    public void onSale(int shelfNumber, ProductType product, Money price) {
+        sales++;
+        revenueCents += price.getCents();
+    }
+
+    @Override
+    public void onCancel(Money returned) {
+        cancels++;
+    }
+
+    @Override
+    public void onChangeFailure(int shelfNumber, Money change) {
+        changeFailures++;
+    }
+
+    @Override
+    public void onChangeTimeout(int shelfNumber, Money change) {
+        changeTimeouts++;
+    }
+
+    @Override
+    public void onStockOut(int shelfNumber) {
+        stockOuts++;
+    }
+
+    void machineFinished() {
+        machines++;
+    }
+
+    void customerArrived() {
+        customers++;
+    }
+
+    void operationExecuted() {
+        operations++;
+    }
+
+    SimulationStatistics merge(SimulationStatistics other) {
+        SimulationStatistics result = new SimulationStatistics();
+        result.machines = machines + other.machines;
+        result.customers = customers + other.customers;
+        result.operations = operations + other.operations;
+        result.sales = sales + other.sales;
+        result.revenueCents = revenueCents + other.revenueCents;
+        result.cancels = cancels + other.cancels;
+        result.changeFailures = changeFailures + other.changeFailures;
+        result.changeTimeouts = changeTimeouts + other.changeTimeouts;
+        result.stockOuts = stockOuts + other.stockOuts;
+        return result;
+    }
+
+    public long getMachines() {
+        return machines;
+    }
+
+    public long getCustomers() {
+        return customers;
+    }
+
+    /**
+     * @return number of calls made on machines
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getSales() {
+        return sales;
+    }
+
+    public Money getRevenue() {
+        return Money.ofCents(revenueCents);
+    }
+
+    /**
+     * @return cancelled orders, including the ones cancelled because of missing change, but not customers walking away
+     * from an empty shelf
+     */
+    public long getCancels() {
+        return cancels;
+    }
+
+    public long getChangeFailures() {
+        return changeFailures;
+    }
+
+    public long getChangeTimeouts() {
+        return changeTimeouts;
+    }
+
+    public long getStockOuts() {
+        return stockOuts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SimulationStatistics))
+            return false;
+        SimulationStatistics other = (SimulationStatistics) o;
+        return machines == other.machines &&
+            customers == other.customers &&
+            operations == other.operations &&
+            sales == other.sales &&
+            revenueCents == other.revenueCents &&
+            cancels == other.cancels &&
+            changeFailures == other.changeFailures &&
+            changeTimeouts == other.changeTimeouts &&
+            stockOuts == other.stockOuts;
+    }
+
+    @Override
+    public int hashCode() {
+        long result = machines;
+        result = 31 * result + customers;
+        result = 31 * result + operations;
+        result = 31 * result + sales;
+        result = 31 * result + revenueCents;
+        result = 31 * result + cancels;
+        result = 31 * result + changeFailures;
+        result = 31 * result + changeTimeouts;
+        result = 31 * result + stockOuts;
+        return Long.hashCode(result);
+    }
+
+    @Override
+    public String toString() {
+        return "machines=" + machines +
+            ", customers=" + customers +
+            ", operations=" + operations +
+            ", sales=" + sales +
+            ", revenue=" + getRevenue() +
+            ", cancels=" + cancels +
+            ", changeFailures=" + changeFailures +
+            ", changeTimeouts=" + changeTimeouts +
+            ", stockOuts=" + stockOuts;
+    }
+}
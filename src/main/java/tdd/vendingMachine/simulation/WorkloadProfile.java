@@ -0,0 +1,118 @@
+package tdd.vendingMachine.simulation;
+
+import tdd.vendingMachine.Money;
+import tdd.vendingMachine.MoneyFactory;
+
+/**
+ * Describes customers coming to a single machine
+ */
+public class WorkloadProfile {
+    private final double customersPerHour;
+    private final double hours;
+    private final double[] shelfWeights;
+    private final Money[] coins;
+    private final double[] coinWeights;
+    private final double cancelProbability;
+
+    /**
+     *
+     * @param customersPerHour mean arrival rate, arrivals are a Poisson process
+     * @param hours simulated time per machine
+     * @param shelfWeights how often each shelf is chosen, relative to each other
+     * @param coins coins the customers carry, may contain coins not accepted by the machine
+     * @param coinWeights how often each coin is inserted, relative to each other
+     * @param cancelProbability chance that the customer gives up before each inserted coin
+     */
+    public WorkloadProfile(
+        double customersPerHour,
+        double hours,
+        double[] shelfWeights,
+        Money[] coins,
+        double[] coinWeights,
+        double cancelProbability
+    ) {
+        if (customersPerHour <= 0 || hours <= 0)
+            throw new IllegalArgumentException("Arrival rate and time have to be positive");
+        if (coins.length != coinWeights.length)
+            throw new IllegalArgumentException("Every coin needs a weight");
+        if (cancelProbability < 0 || cancelProbability >= 1)
+            throw new IllegalArgumentException("Cancel probability has to be in [0, 1)");
+        this.customersPerHour = customersPerHour;
+        this.hours = hours;
+        this.shelfWeights = cumulative(shelfWeights);
+        this.coins = coins.clone();
+        this.coinWeights = cumulative(coinWeights);
+        this.cancelProbability = cancelProbability;
+    }
+
+    /**
+     * A day of a machine with the default shelves and coins
+     */
+    public static WorkloadProfile defaultProfile() {
+        return new WorkloadProfile(
+            6,
+            24,
+            new double[]{5, 3, 4, 6, 1},
+            new Money[]{
+                MoneyFactory.createMoney(5),
+                MoneyFactory.createMoney(2),
+                MoneyFactory.createMoney(1),
+                MoneyFactory.createMoney(0, 5),
+                MoneyFactory.createMoney(0, 2),
+                MoneyFactory.createMoney(0, 1)
+            },
+            new double[]{2, 3, 3, 2, 1, 1},
+            0.02
+        );
+    }
+
+    public double getCustomersPerHour() {
+        return customersPerHour;
+    }
+
+    public double getHours() {
+        return hours;
+    }
+
+    public double getCancelProbability() {
+        return cancelProbability;
+    }
+
+    /**
+     * @param random uniformly distributed value in [0, 1)
+     */
+    public int pickShelf(double random) {
+        return pick(shelfWeights, random);
+    }
+
+    /**
+     * @param random uniformly distributed value in [0, 1)
+     */
+    public Money pickCoin(double random) {
+        return coins[pick(coinWeights, random)];
+    }
+
+    private static int pick(double[] cumulativeWeights, double random) {
+        double target = random * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length - 1; i++)
+            if (target < cumulativeWeights[i])
+                return i;
+        return cumulativeWeights.length - 1;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        if (weights.length == 0)
+            throw new IllegalArgumentException("At least one weight needed");
+        double[] result = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0)
+                throw new IllegalArgumentException("Weight can't be negative");
+            sum += weights[i];
+            result[i] = sum;
+        }
+        if (sum <= 0)
+            throw new IllegalArgumentException("At least one weight has to be positive");
+        return result;
+    }
+}
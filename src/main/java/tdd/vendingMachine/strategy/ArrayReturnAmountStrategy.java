@@ -0,0 +1,102 @@
+package tdd.vendingMachine.strategy;
+
+import java.util.Arrays;
+
+/*
+ * The same algorithm as DynamicReturnAmountStrategy, but instead of working on the decimals directly all amounts are
+ * converted to cents and divided by the greatest common divisor of denominations. Then the distance between zero
+ * and the target is small enough (87 steps for 8.70 with 0.10 coins) to keep the states in flat arrays.
+ *
+ * Iterating the arrays from the lowest to the highest value is exactly the order in which the priority queue of the
+ * dynamic strategy visits achieved values, so both strategies always choose the same coins, including ties.
+ * The tables are kept between calls and only grow, so in a steady state a call doesn't allocate anything.
+ */
+public class ArrayReturnAmountStrategy implements ReturnAmountByDenominationsStrategy {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int BACKTRACKING_FINISHED = -1;
+
+    private int[] numOfCoins = new int[0];
+    private int[] lastUsedCoinIndex = new int[0];
+    private int[] usedCoins = new int[0];
+
+    @Override
+    public ChangeStatus execute(long[] denominations, int[] counts, long returnAmount, int[] result) {
+        Arrays.fill(result, 0, denominations.length, 0);
+        if (returnAmount < 0)
+            return ChangeStatus.IMPOSSIBLE;
+        if (returnAmount == 0)
+            return ChangeStatus.FOUND;
+
+        long unit = 0;
+        for (long denomination : denominations) {
+            assert denomination > 0;
+            unit = gcd(unit, denomination);
+        }
+        if (unit == 0 || returnAmount % unit != 0)
+            return ChangeStatus.IMPOSSIBLE;
+
+        long targetUnits = returnAmount / unit;
+        if (targetUnits >= Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Return amount too large: " + returnAmount);
+        int target = (int) targetUnits;
+        ensureCapacity(target + 1);
+
+        calculateOptimalValues(denominations, counts, unit, target);
+        if (numOfCoins[target] == UNREACHABLE)
+            return ChangeStatus.IMPOSSIBLE;
+
+        int currentValue = target;
+        while (lastUsedCoinIndex[currentValue] != BACKTRACKING_FINISHED) {
+            int coinIndex = lastUsedCoinIndex[currentValue];
+            result[coinIndex]++;
+            currentValue -= (int) (denominations[coinIndex] / unit);
+        }
+        return ChangeStatus.FOUND;
+    }
+
+    private void calculateOptimalValues(long[] denominations, int[] counts, long unit, int target) {
+        Arrays.fill(numOfCoins, 0, target + 1, UNREACHABLE);
+        numOfCoins[0] = 0;
+        lastUsedCoinIndex[0] = BACKTRACKING_FINISHED;
+
+        for (int coinIndex = 0; coinIndex < denominations.length; coinIndex++) {
+            long coinUnits = denominations[coinIndex] / unit;
+            if (coinUnits > target)
+                continue;
+            int coin = (int) coinUnits;
+            int count = counts[coinIndex];
+
+            Arrays.fill(usedCoins, 0, target + 1, 0);
+            for (int currentValue = 0; currentValue + coin <= target; currentValue++) {
+                int currentNumOfCoins = numOfCoins[currentValue];
+                if (currentNumOfCoins == UNREACHABLE || usedCoins[currentValue] == count)
+                    continue;
+
+                int jump = currentValue + coin;
+                if (numOfCoins[jump] > currentNumOfCoins + 1) {
+                    numOfCoins[jump] = currentNumOfCoins + 1;
+                    lastUsedCoinIndex[jump] = coinIndex;
+                    usedCoins[jump] = usedCoins[currentValue] + 1;
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (numOfCoins.length >= size)
+            return;
+        int newSize = Math.max(size, numOfCoins.length * 2);
+        numOfCoins = new int[newSize];
+        lastUsedCoinIndex = new int[newSize];
+        usedCoins = new int[newSize];
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long tmp = a % b;
+            a = b;
+            b = tmp;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,226 @@
+package tdd.vendingMachine.strategy;
+
+import java.util.Arrays;
+
+/*
+ * Strategy with a bounded running time, for when the purchase button has a latency limit and the coins are unusual
+ * enough (or the amounts large enough) for the dynamic strategies to take too long.
+ *
+ * Searches plans depth first, from the largest coin and the most coins of it, so the first plan found is the greedy
+ * one, then keeps looking for plans with fewer coins. A branch is cut when even the largest coin left can't beat the
+ * best plan, when the coins left are worth less than the rest of the amount, or when the rest isn't a multiple of
+ * their common divisor. Every visited branch is a state, the search stops after the maximum number of states or after
+ * the maximum time, checked every few states so the clock isn't read on every one:
+ *  - search finished: the plan has the fewest coins, or the amount is proven impossible
+ *  - budget exceeded with a plan: the best plan found so far is returned as FOUND, it may use more coins than needed
+ *  - budget exceeded without a plan: TIMED_OUT, the amount may or may not be payable
+ * Work of every call is kept, to tune the budget against the latency it gives.
+ */
+public class BudgetedReturnAmountStrategy implements ReturnAmountByDenominationsStrategy {
+    public static final long NO_TIME_LIMIT = Long.MAX_VALUE;
+
+    private static final int CLOCK_CHECK_INTERVAL = 256;
+    private static final int NOT_FOUND = Integer.MAX_VALUE;
+
+    private final long maxStates;
+    private final long maxNanos;
+
+    private long[] checkedDenominations = new long[0];
+    private int[] descendingOrder = new int[0];
+    private int[] current = new int[0];
+    private int[] best = new int[0];
+    private long[] valueFrom = new long[1];
+    private long[] gcdFrom = new long[1];
+
+    private long[] denominations;
+    private int[] counts;
+    private int bestCoins;
+    private long states;
+    private long start;
+    private boolean exceeded;
+
+    private long lastWork;
+    private long peakWork;
+    private long totalWork;
+    private long callCount;
+    private long unprovenCount;
+    private long timedOutCount;
+
+    /**
+     * @param maxStates most branches of the search a single call may visit
+     */
+    public BudgetedReturnAmountStrategy(long maxStates) {
+        this(maxStates, NO_TIME_LIMIT);
+    }
+
+    /**
+     * @param maxStates most branches of the search a single call may visit
+     * @param maxNanos most time a single call may take, or NO_TIME_LIMIT
+     */
+    public BudgetedReturnAmountStrategy(long maxStates, long maxNanos) {
+        if (maxStates <= 0 || maxNanos <= 0)
+            throw new IllegalArgumentException("Budget has to be positive");
+        this.maxStates = maxStates;
+        this.maxNanos = maxNanos;
+    }
+
+    @Override
+    public ChangeStatus execute(long[] denominations, int[] counts, long returnAmount, int[] usedCoins) {
+        Arrays.fill(usedCoins, 0, denominations.length, 0);
+        callCount++;
+        lastWork = 0;
+        if (returnAmount < 0)
+            return ChangeStatus.IMPOSSIBLE;
+        if (returnAmount == 0)
+            return ChangeStatus.FOUND;
+
+        prepare(denominations, counts);
+        bestCoins = NOT_FOUND;
+        states = 0;
+        exceeded = false;
+        start = maxNanos == NO_TIME_LIMIT ? 0 : System.nanoTime();
+        search(0, returnAmount, 0);
+
+        lastWork = states;
+        peakWork = Math.max(peakWork, states);
+        totalWork += states;
+        this.denominations = null;
+        this.counts = null;
+
+        if (bestCoins == NOT_FOUND) {
+            if (!exceeded)
+                return ChangeStatus.IMPOSSIBLE;
+            timedOutCount++;
+            return ChangeStatus.TIMED_OUT;
+        }
+        if (exceeded)
+            unprovenCount++;
+        System.arraycopy(best, 0, usedCoins, 0, denominations.length);
+        return ChangeStatus.FOUND;
+    }
+
+    /**
+     * @return false with a time limit, how far the search gets depends on the load of the machine
+     */
+    @Override
+    public boolean isDeterministic() {
+        return maxNanos == NO_TIME_LIMIT;
+    }
+
+    /**
+     * @return states visited by the last call
+     */
+    public long getLastWork() {
+        return lastWork;
+    }
+
+    /**
+     * @return most states visited by a single call so far
+     */
+    public long getPeakWork() {
+        return peakWork;
+    }
+
+    public long getTotalWork() {
+        return totalWork;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    /**
+     * @return how many times a plan was returned without proving it has the fewest coins
+     */
+    public long getUnprovenCount() {
+        return unprovenCount;
+    }
+
+    /**
+     * @return how many times the budget ran out before finding any plan
+     */
+    public long getTimedOutCount() {
+        return timedOutCount;
+    }
+
+    private void prepare(long[] denominations, int[] counts) {
+        if (!Arrays.equals(checkedDenominations, denominations)) {
+            checkedDenominations = denominations.clone();
+            descendingOrder = descendingOrder(denominations);
+            current = new int[denominations.length];
+            best = new int[denominations.length];
+            valueFrom = new long[denominations.length + 1];
+            gcdFrom = new long[denominations.length + 1];
+        }
+        this.denominations = denominations;
+        this.counts = counts;
+        Arrays.fill(current, 0);
+
+        // What the coins from the depth onward can pay at most, and the step they pay it in
+        for (int depth = descendingOrder.length - 1; depth >= 0; depth--) {
+            long denomination = denominations[descendingOrder[depth]];
+            int count = counts[descendingOrder[depth]];
+            assert denomination > 0;
+            valueFrom[depth] = valueFrom[depth + 1] + denomination * count;
+            gcdFrom[depth] = count > 0 ? gcd(gcdFrom[depth + 1], denomination) : gcdFrom[depth + 1];
+        }
+    }
+
+    private void search(int depth, long left, int coinsSoFar) {
+        if (outOfBudget())
+            return;
+        if (left == 0) {
+            if (coinsSoFar < bestCoins) {
+                bestCoins = coinsSoFar;
+                System.arraycopy(current, 0, best, 0, current.length);
+            }
+            return;
+        }
+        if (depth == descendingOrder.length || valueFrom[depth] < left || left % gcdFrom[depth] != 0)
+            return;
+
+        int coinIndex = descendingOrder[depth];
+        long coin = denominations[coinIndex];
+        // Even paying the rest with this coin only, the largest one left, wouldn't beat the best plan
+        if (coinsSoFar + (left + coin - 1) / coin >= bestCoins)
+            return;
+
+        int most = (int) Math.min(counts[coinIndex], left / coin);
+        for (int used = most; used >= 0 && !exceeded; used--) {
+            current[coinIndex] = used;
+            search(depth + 1, left - used * coin, coinsSoFar + used);
+        }
+        current[coinIndex] = 0;
+    }
+
+    private boolean outOfBudget() {
+        if (!exceeded) {
+            exceeded = states == maxStates ||
+                maxNanos != NO_TIME_LIMIT && states % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - start > maxNanos;
+            if (!exceeded)
+                states++;
+        }
+        return exceeded;
+    }
+
+    private static int[] descendingOrder(long[] denominations) {
+        Integer[] order = new Integer[denominations.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(denominations[b], denominations[a]));
+
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+            result[i] = order[i];
+        return result;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long tmp = a % b;
+            a = b;
+            b = tmp;
+        }
+        return a;
+    }
+}
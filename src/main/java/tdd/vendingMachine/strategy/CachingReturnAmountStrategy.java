@@ -0,0 +1,131 @@
+package tdd.vendingMachine.strategy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Decorator remembering the plans of another strategy. A machine sells a handful of products with a handful of coins,
+ * so the same coins in the machine and the same change show up over and over.
+ * The key is a flat long array (amount, then every denomination with its count in cents), the lookup reuses a single
+ * probe key and only a miss copies it into the map, so a hit doesn't allocate. The least recently used plans are
+ * evicted above maxSize. A timed out answer depends on the moment rather than on the key, so it's never kept
+ */
+public class CachingReturnAmountStrategy implements ReturnAmountByDenominationsStrategy {
+    // Marks cached "can't return" answers, compared by identity
+    private static final int[] IMPOSSIBLE_PLAN = new int[0];
+
+    private final ReturnAmountByDenominationsStrategy strategy;
+    private final Map<Key, int[]> cache;
+    private final Key probe = new Key();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CachingReturnAmountStrategy(ReturnAmountByDenominationsStrategy strategy, int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Cache size has to be positive");
+        this.strategy = strategy;
+        this.cache = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                if (size() <= maxSize)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public ChangeStatus execute(long[] denominations, int[] counts, long returnAmount, int[] usedCoins) {
+        probe.set(denominations, counts, returnAmount);
+        int[] plan = cache.get(probe);
+        if (plan != null) {
+            hits++;
+            if (plan == IMPOSSIBLE_PLAN)
+                return ChangeStatus.IMPOSSIBLE;
+            System.arraycopy(plan, 0, usedCoins, 0, plan.length);
+            return ChangeStatus.FOUND;
+        }
+
+        misses++;
+        ChangeStatus status = strategy.execute(denominations, counts, returnAmount, usedCoins);
+        if (status == ChangeStatus.TIMED_OUT)
+            return status;
+        int[] cached = status == ChangeStatus.FOUND ? Arrays.copyOf(usedCoins, denominations.length) : IMPOSSIBLE_PLAN;
+        cache.put(probe.copy(), cached);
+        return status;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return strategy.isDeterministic();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private static class Key {
+        long[] values = new long[1];
+        int length;
+        int hash;
+
+        void set(long[] denominations, int[] counts, long returnAmount) {
+            length = 1 + 2 * denominations.length;
+            if (values.length < length)
+                values = new long[length];
+
+            values[0] = returnAmount;
+            for (int i = 0; i < denominations.length; i++) {
+                values[1 + 2 * i] = denominations[i];
+                values[2 + 2 * i] = counts[i];
+            }
+
+            int result = 1;
+            for (int i = 0; i < length; i++)
+                result = 31 * result + Long.hashCode(values[i]);
+            hash = result;
+        }
+
+        Key copy() {
+            Key result = new Key();
+            result.values = Arrays.copyOf(values, length);
+            result.length = length;
+            result.hash = hash;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            if (other.length != length || other.hash != hash)
+                return false;
+            for (int i = 0; i < length; i++)
+                if (values[i] != other.values[i])
+                    return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package tdd.vendingMachine.strategy;
+
+/**
+ * Outcome of {@link ReturnAmountByDenominationsStrategy#execute(long[], int[], long, int[])}
+ */
+public enum ChangeStatus {
+    /**
+     * Plan was written into the output buffer
+     */
+    FOUND,
+    /**
+     * Amount can't be returned with provided coins
+     */
+    IMPOSSIBLE,
+    /**
+     * Strategy ran out of its budget before finding any plan, the amount may still be payable
+     */
+    TIMED_OUT
+}
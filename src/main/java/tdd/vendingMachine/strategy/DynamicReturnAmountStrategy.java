@@ -1,6 +1,7 @@
 package tdd.vendingMachine.strategy;
 
 import javafx.util.Pair;
+import tdd.vendingMachine.Money;
 import tdd.vendingMachine.MoneyFactory;
 
 import java.math.BigDecimal;
@@ -41,6 +42,28 @@ public class DynamicReturnAmountStrategy implements ReturnAmountByDenominationsS
         return Optional.of(result);
     }
 
+    @Override
+    public Optional<List<Integer>> execute(List<Pair<BigDecimal, Integer>> denominationsCount, Money returnAmount) {
+        return execute(denominationsCount, returnAmount.toBigDecimal());
+    }
+
+    /*
+     * This strategy works on decimals, so the low level call is only adapted to it
+     */
+    @Override
+    public ChangeStatus execute(long[] denominations, int[] counts, long returnAmount, int[] usedCoins) {
+        List<Pair<BigDecimal, Integer>> denominationsCount = new ArrayList<>(denominations.length);
+        for (int i = 0; i < denominations.length; i++)
+            denominationsCount.add(new Pair<>(Money.ofCents(denominations[i]).toBigDecimal(), counts[i]));
+
+        Optional<List<Integer>> result = execute(denominationsCount, Money.ofCents(returnAmount).toBigDecimal());
+        if (!result.isPresent())
+            return ChangeStatus.IMPOSSIBLE;
+        for (int i = 0; i < denominations.length; i++)
+            usedCoins[i] = result.get().get(i);
+        return ChangeStatus.FOUND;
+    }
+
     /*
      * A mix between normal coin change problem dynamic solution and a dijkstra.
      * Each iteration of out-most loop updates optimalAchievedValue for the optimal solution using only
@@ -0,0 +1,185 @@
+package tdd.vendingMachine.strategy;
+
+import java.util.Arrays;
+
+/*
+ * All real currencies are canonical coin systems, meaning the greedy algorithm (always take the largest coin that
+ * fits) gives the minimal number of coins. Whether the system is canonical is checked once per denomination set
+ * using the Kozen-Zaks bound: if greedy is not optimal for some amount, the smallest such amount is lower than the sum
+ * of the two largest coins, so it's enough to compare greedy with an unbounded dynamic solution below it.
+ *
+ * The machine has a limited number of coins of each kind, so greedy takes as many of each coin as are available and
+ * fits. Once a coin runs out before it stops fitting, greedy can miss a solution or return one with more coins than
+ * necessary. Otherwise its plan is the unbounded greedy one and minimal. So when a coin runs out, greedy doesn't reach
+ * the amount, or the system is not canonical, the fallback strategy is used. When greedy still paid the amount, its
+ * plan is kept if the fallback finds none or a larger one.
+ */
+public class GreedyReturnAmountStrategy implements ReturnAmountByDenominationsStrategy {
+    private static final int MINIMAL = 0;
+    private static final int PAID = 1;
+    private static final int FAILED = 2;
+
+    private final ReturnAmountByDenominationsStrategy fallback;
+
+    private long[] checkedDenominations = new long[0];
+    private int[] descendingOrder = new int[0];
+    private boolean canonical = true;
+    private int[] greedyPlan = new int[0];
+
+    private long greedyCount;
+    private long fallbackCount;
+
+    public GreedyReturnAmountStrategy() {
+        this(new ArrayReturnAmountStrategy());
+    }
+
+    public GreedyReturnAmountStrategy(ReturnAmountByDenominationsStrategy fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public ChangeStatus execute(long[] denominations, int[] counts, long returnAmount, int[] usedCoins) {
+        int outcome = tryGreedy(denominations, counts, returnAmount, usedCoins);
+        if (outcome == MINIMAL)
+            return ChangeStatus.FOUND;
+
+        fallbackCount++;
+        if (outcome == FAILED)
+            return fallback.execute(denominations, counts, returnAmount, usedCoins);
+
+        // Greedy plan pays the amount, the fallback's is kept only if it's known and smaller
+        if (greedyPlan.length < denominations.length)
+            greedyPlan = new int[denominations.length];
+        System.arraycopy(usedCoins, 0, greedyPlan, 0, denominations.length);
+        ChangeStatus status = fallback.execute(denominations, counts, returnAmount, usedCoins);
+        int length = denominations.length;
+        if (status != ChangeStatus.FOUND || coinCount(usedCoins, length) > coinCount(greedyPlan, length)) {
+            System.arraycopy(greedyPlan, 0, usedCoins, 0, length);
+            return ChangeStatus.FOUND;
+        }
+        return status;
+    }
+
+    /**
+     * @return how many times the plan was found by greedy algorithm
+     */
+    public long getGreedyCount() {
+        return greedyCount;
+    }
+
+    /**
+     * @return how many times the fallback strategy had to be asked
+     */
+    public long getFallbackCount() {
+        return fallbackCount;
+    }
+
+    /**
+     * @return MINIMAL when the plan in result is the fewest coins, PAID when it pays the amount but a coin ran out on
+     * the way, FAILED otherwise
+     */
+    private int tryGreedy(long[] denominations, int[] counts, long returnAmount, int[] result) {
+        if (!Arrays.equals(checkedDenominations, denominations)) {
+            checkedDenominations = denominations.clone();
+            descendingOrder = descendingOrder(denominations);
+            canonical = isCanonical(denominations);
+        }
+        if (!canonical || returnAmount < 0)
+            return FAILED;
+
+        long left = returnAmount;
+        boolean ranOut = false;
+        for (int coinIndex : descendingOrder) {
+            long fitting = left / denominations[coinIndex];
+            // Smaller coins have to make up for the missing ones, maybe with more coins than needed
+            if (fitting > counts[coinIndex]) {
+                fitting = counts[coinIndex];
+                ranOut = true;
+            }
+            result[coinIndex] = (int) fitting;
+            left -= fitting * denominations[coinIndex];
+        }
+        if (left != 0)
+            return FAILED;
+        if (ranOut)
+            return PAID;
+
+        greedyCount++;
+        return MINIMAL;
+    }
+
+    private static int coinCount(int[] plan, int length) {
+        int result = 0;
+        for (int i = 0; i < length; i++)
+            result += plan[i];
+        return result;
+    }
+
+    /**
+     *
+     * @param denominations values of the coins in cents, in any order
+     * @return true if greedy algorithm with unlimited coins gives optimal solution for every amount payable
+     * with these coins
+     */
+    public static boolean isCanonical(long[] denominations) {
+        long[] sorted = Arrays.stream(denominations).filter(d -> d > 0).distinct().sorted().toArray();
+        if (sorted.length == 0)
+            return true;
+
+        long unit = 0;
+        for (long denomination : sorted)
+            unit = gcd(unit, denomination);
+        // Without a coin of the smallest step greedy can get stuck on amounts that are payable otherwise
+        if (sorted[0] != unit)
+            return false;
+        if (sorted.length <= 2)
+            return true;
+
+        int[] coins = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++)
+            coins[i] = Math.toIntExact(sorted[i] / unit);
+
+        int limit = coins[coins.length - 1] + coins[coins.length - 2];
+        int[] optimal = new int[limit];
+        for (int amount = 1; amount < limit; amount++) {
+            int best = Integer.MAX_VALUE;
+            for (int coin : coins) {
+                if (coin > amount)
+                    break;
+                best = Math.min(best, optimal[amount - coin] + 1);
+            }
+            optimal[amount] = best;
+
+            int greedy = 0;
+            int left = amount;
+            for (int i = coins.length - 1; i >= 0; i--) {
+                greedy += left / coins[i];
+                left %= coins[i];
+            }
+            if (greedy > best)
+                return false;
+        }
+        return true;
+    }
+
+    private static int[] descendingOrder(long[] denominations) {
+        Integer[] order = new Integer[denominations.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(denominations[b], denominations[a]));
+
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+            result[i] = order[i];
+        return result;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long tmp = a % b;
+            a = b;
+            b = tmp;
+        }
+        return a;
+    }
+}
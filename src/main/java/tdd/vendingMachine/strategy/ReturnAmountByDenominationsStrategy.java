@@ -1,8 +1,10 @@
 package tdd.vendingMachine.strategy;
 
 import javafx.util.Pair;
+import tdd.vendingMachine.Money;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,11 +12,53 @@ import java.util.Optional;
  * Calculates how to obtain a given amount of money with provided coins
  */
 public interface ReturnAmountByDenominationsStrategy {
+    /**
+     * Low level version used on the purchase path, doesn't allocate anything on its own
+     *
+     * @param denominations value of each denomination in cents
+     * @param counts how many coins of each denomination are available, same order as denominations
+     * @param returnAmount amount to return in cents
+     * @param usedCoins caller owned buffer, at least as long as denominations. On FOUND contains how many coins of
+     * each denomination to use, otherwise its content is unspecified
+     */
+    ChangeStatus execute(long[] denominations, int[] counts, long returnAmount, int[] usedCoins);
+
+    /**
+     * @return false if the same call may give a different answer, e.g. because it's limited by time. Journals and
+     * simulations that run the machine again rely on the answers being the same
+     */
+    default boolean isDeterministic() {
+        return true;
+    }
+
     /**
      *
      * @param denominationsCount pair of denomination and amount of that denomination
      * @return empty Optional if can't return correct amount, list in input order of how many coins to use of each
      * denomination otherwise
      */
-    Optional<List<Integer>> execute(List<Pair<BigDecimal, Integer>> denominationsCount, BigDecimal returnAmount);
+    default Optional<List<Integer>> execute(List<Pair<BigDecimal, Integer>> denominationsCount, BigDecimal returnAmount) {
+        return execute(denominationsCount, Money.fromBigDecimal(returnAmount));
+    }
+
+    /**
+     * Same as {@link #execute(List, BigDecimal)}
+     */
+    default Optional<List<Integer>> execute(List<Pair<BigDecimal, Integer>> denominationsCount, Money returnAmount) {
+        long[] denominations = new long[denominationsCount.size()];
+        int[] counts = new int[denominationsCount.size()];
+        for (int i = 0; i < denominations.length; i++) {
+            denominations[i] = Money.fromBigDecimal(denominationsCount.get(i).getKey()).getCents();
+            counts[i] = denominationsCount.get(i).getValue();
+        }
+
+        int[] usedCoins = new int[denominations.length];
+        if (execute(denominations, counts, returnAmount.getCents(), usedCoins) != ChangeStatus.FOUND)
+            return Optional.empty();
+
+        List<Integer> result = new ArrayList<>(usedCoins.length);
+        for (int used : usedCoins)
+            result.add(used);
+        return Optional.of(result);
+    }
 }
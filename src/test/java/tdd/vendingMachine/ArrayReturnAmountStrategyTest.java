@@ -0,0 +1,93 @@
+package tdd.vendingMachine;
+
+import javafx.util.Pair;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.strategy.ArrayReturnAmountStrategy;
+import tdd.vendingMachine.strategy.DynamicReturnAmountStrategy;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+public class ArrayReturnAmountStrategyTest {
+    private ArrayReturnAmountStrategy subject;
+
+    @Before
+    public void before() {
+        subject = new ArrayReturnAmountStrategy();
+    }
+
+    @Test
+    public void no_shelves() {
+        Assertions.assertThat(subject.execute(
+            new ArrayList<>(),
+            MoneyFactory.createCoin(1)
+        )).isEmpty();
+    }
+
+    @Test
+    public void optimal_solution() {
+        Assertions.assertThat(subject.execute(
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(1), 2),
+                new Pair<>(MoneyFactory.createCoin(3), 2),
+                new Pair<>(MoneyFactory.createCoin(4), 1)
+            ),
+            MoneyFactory.createCoin(6)
+        )).hasValue(Arrays.asList(0, 2, 0));
+    }
+
+    @Test
+    public void multiple_shelves_impossible() {
+        Assertions.assertThat(subject.execute(
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(3), 2),
+                new Pair<>(MoneyFactory.createCoin(5), 2),
+                new Pair<>(MoneyFactory.createCoin(6, 9), 1)
+            ),
+            MoneyFactory.createCoin(7)
+        )).isEmpty();
+    }
+
+    @Test
+    public void fraction_parts() {
+        Assertions.assertThat(subject.execute(
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(4), 2),
+                new Pair<>(MoneyFactory.createCoin(9), 1),
+                new Pair<>(MoneyFactory.createCoin(0, 5), 2),
+                new Pair<>(MoneyFactory.createCoin(4, 4), 2)
+            ),
+            MoneyFactory.createCoin(4, 9)
+        )).hasValue(Arrays.asList(0, 0, 1, 1));
+    }
+
+    @Test
+    public void zero_money() {
+        Assertions.assertThat(subject.execute(
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(1), 3),
+                new Pair<>(MoneyFactory.createCoin(0, 3), 4)
+            ),
+            MoneyFactory.zero()
+        )).hasValue(Arrays.asList(0, 0));
+    }
+
+    @Test
+    public void same_results_as_dynamic_strategy() {
+        DynamicReturnAmountStrategy reference = new DynamicReturnAmountStrategy();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            List<Pair<BigDecimal, Integer>> coins = new ArrayList<>();
+            int denominations = 1 + random.nextInt(5);
+            for (int j = 0; j < denominations; j++)
+                coins.add(new Pair<>(MoneyFactory.createCoin(random.nextInt(6), random.nextInt(10) + 1), random.nextInt(4)));
+            BigDecimal amount = MoneyFactory.createCoin(random.nextInt(15), random.nextInt(10));
+
+            Assertions.assertThat(subject.execute(coins, amount))
+                .as("%s for %s", coins, amount)
+                .isEqualTo(reference.execute(coins, amount));
+        }
+    }
+}
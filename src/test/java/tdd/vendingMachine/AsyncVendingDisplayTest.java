@@ -0,0 +1,153 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.display.AsyncVendingDisplay;
+import tdd.vendingMachine.display.OverflowPolicy;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.util.concurrent.CountDownLatch;
+
+public class AsyncVendingDisplayTest {
+    private static String[] lines(StringWriter out) {
+        return out.toString().split(System.lineSeparator());
+    }
+
+    @Test
+    public void prints_money_like_decimal_format() {
+        long[] amounts = {0, 5, 30, 100, 12330, -30, -12345, Long.MAX_VALUE, Long.MIN_VALUE};
+        StringWriter out = new StringWriter();
+        AsyncVendingDisplay display = new AsyncVendingDisplay(out, 16, OverflowPolicy.BLOCK);
+
+        for (long amount : amounts)
+            display.displayMoney(Money.ofCents(amount));
+        display.close();
+
+        DecimalFormat format = new DecimalFormat("0.00");
+        String[] lines = lines(out);
+        Assertions.assertThat(lines).hasSize(amounts.length);
+        for (int i = 0; i < amounts.length; i++)
+            Assertions.assertThat(lines[i])
+                .isEqualTo("[display] " + format.format(Money.ofCents(amounts[i]).toBigDecimal()));
+    }
+
+    @Test
+    public void prints_strings_in_order() {
+        StringWriter out = new StringWriter();
+        AsyncVendingDisplay display = new AsyncVendingDisplay(out, 4, OverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 100; i++)
+            display.displayString("message " + i);
+        display.flush();
+
+        String[] lines = lines(out);
+        Assertions.assertThat(lines).hasSize(100);
+        for (int i = 0; i < 100; i++)
+            Assertions.assertThat(lines[i]).isEqualTo("[display] message " + i);
+        Assertions.assertThat(display.getDropped()).isZero();
+        display.close();
+    }
+
+    @Test
+    public void drop_oldest_keeps_newest_messages() throws InterruptedException {
+        StalledWriter out = new StalledWriter();
+        AsyncVendingDisplay display = new AsyncVendingDisplay(out, 4, OverflowPolicy.DROP_OLDEST);
+        display.displayString("first");
+        out.writing.await();
+
+        for (int i = 0; i < 10; i++)
+            display.displayString("message " + i);
+        out.release.countDown();
+        display.close();
+
+        Assertions.assertThat(lines(out.written)).containsExactly(
+            "[display] first",
+            "[display] message 6",
+            "[display] message 7",
+            "[display] message 8",
+            "[display] message 9"
+        );
+        Assertions.assertThat(display.getDropped()).isEqualTo(6);
+    }
+
+    @Test
+    public void coalesce_keeps_latest_value() throws InterruptedException {
+        StalledWriter out = new StalledWriter();
+        AsyncVendingDisplay display = new AsyncVendingDisplay(out, 2, OverflowPolicy.COALESCE);
+        display.displayString("first");
+        out.writing.await();
+
+        for (int i = 0; i < 10; i++)
+            display.displayMoney(Money.ofCents(i));
+        out.release.countDown();
+        display.close();
+
+        Assertions.assertThat(lines(out.written)).containsExactly(
+            "[display] first",
+            "[display] 0,00",
+            "[display] 0,09"
+        );
+        Assertions.assertThat(display.getDropped()).isEqualTo(8);
+    }
+
+    @Test
+    public void coalesce_never_replaces_texts() throws InterruptedException {
+        StalledWriter out = new StalledWriter();
+        AsyncVendingDisplay display = new AsyncVendingDisplay(out, 2, OverflowPolicy.COALESCE);
+        display.displayString("first");
+        out.writing.await();
+
+        display.displayMoney(Money.ofCents(1));
+        display.displayMoney(Money.ofCents(2));
+        display.displayString("Item bought, change returned");
+        display.displayMoney(Money.ofCents(3));
+        display.displayMoney(Money.ofCents(4));
+        out.release.countDown();
+        display.close();
+
+        Assertions.assertThat(lines(out.written)).containsExactly(
+            "[display] first",
+            "[display] Item bought, change returned",
+            "[display] 0,04"
+        );
+        Assertions.assertThat(display.getDropped()).isEqualTo(3);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closed_display_rejects_messages() {
+        AsyncVendingDisplay display = new AsyncVendingDisplay(new StringWriter(), 4, OverflowPolicy.BLOCK);
+        display.close();
+
+        display.displayString("too late");
+    }
+
+    /**
+     * Writer stuck in its first write until released
+     */
+    private static class StalledWriter extends Writer {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final StringWriter written = new StringWriter();
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
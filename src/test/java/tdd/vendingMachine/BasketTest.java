@@ -0,0 +1,154 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BasketTest {
+    private static final int COOKIE_SHELF = 1;
+    private static final int WATER_SHELF = 3;
+
+    @Mock
+    VendingDisplay fakeDisplay;
+
+    @Mock
+    VendingMachineListener fakeListener;
+
+    private VendingMachine subject;
+
+    @Before
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        subject = new VendingMachine(
+            fakeDisplay,
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet()
+        );
+        subject.setListener(fakeListener);
+    }
+
+    @Test
+    public void sells_whole_basket_with_one_change() {
+        // 2 x 1.50 + 3 x 0.40 = 4.20
+        BasketStatus status = subject.buyBasket(
+            Arrays.asList(new BasketLine(COOKIE_SHELF, 2), new BasketLine(WATER_SHELF, 3)),
+            Collections.singletonList(MoneyFactory.createMoney(5))
+        );
+
+        Assertions.assertThat(status).isEqualTo(BasketStatus.SOLD);
+        Assertions.assertThat(subject.receiveItems()).extracting("name")
+            .containsExactly("Cookie", "Cookie", "Water", "Water", "Water");
+        Assertions.assertThat(subject.receiveItem()).isNull();
+        Assertions.assertThat(subject.receiveChangeMoney()).isEqualTo(MoneyFactory.createMoney(0, 8));
+        Assertions.assertThat(subject.getProductCount(COOKIE_SHELF)).isEqualTo(1);
+        Assertions.assertThat(subject.getProductCount(WATER_SHELF)).isZero();
+        verify(fakeDisplay, times(1)).displayString(anyString());
+        verify(fakeDisplay, times(0)).displayMoney(any(Money.class));
+    }
+
+    @Test
+    public void sells_nothing_without_stock_for_every_line() {
+        subject.insertCoin(MoneyFactory.createMoney(5));
+
+        BasketStatus status = subject.buyBasket(
+            Arrays.asList(new BasketLine(WATER_SHELF, 2), new BasketLine(COOKIE_SHELF, 1), new BasketLine(WATER_SHELF, 2))
+        );
+
+        Assertions.assertThat(status).isEqualTo(BasketStatus.NOT_ENOUGH_PRODUCTS);
+        Assertions.assertThat(subject.receiveItems()).isEmpty();
+        Assertions.assertThat(subject.getProductCount(WATER_SHELF)).isEqualTo(3);
+        Assertions.assertThat(subject.getCredit()).isEqualTo(MoneyFactory.createMoney(5));
+        verify(fakeListener, never()).onStockOut(anyInt());
+    }
+
+    @Test
+    public void reports_stock_out_of_empty_shelf() {
+        subject.insertCoin(MoneyFactory.createMoney(5));
+        subject.buyBasket(Collections.singletonList(new BasketLine(WATER_SHELF, 3)));
+
+        BasketStatus status = subject.buyBasket(Collections.singletonList(new BasketLine(WATER_SHELF, 1)));
+
+        Assertions.assertThat(status).isEqualTo(BasketStatus.NOT_ENOUGH_PRODUCTS);
+        verify(fakeListener).onStockOut(WATER_SHELF);
+    }
+
+    @Test
+    public void keeps_credit_when_not_enough_money() {
+        subject.insertCoin(MoneyFactory.createMoney(2));
+
+        BasketStatus status = subject.buyBasket(Collections.singletonList(new BasketLine(COOKIE_SHELF, 2)));
+
+        Assertions.assertThat(status).isEqualTo(BasketStatus.NOT_ENOUGH_MONEY);
+        verify(fakeDisplay).displayMoney(MoneyFactory.createMoney(1));
+        Assertions.assertThat(subject.getCredit()).isEqualTo(MoneyFactory.createMoney(2));
+    }
+
+    @Test
+    public void returns_credit_when_change_cant_be_paid() {
+        subject = new VendingMachine(
+            fakeDisplay,
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            new CoinInventory(new long[]{500, 10}, new int[]{0, 0})
+        );
+        subject.setListener(fakeListener);
+
+        BasketStatus status = subject.buyBasket(
+            Collections.singletonList(new BasketLine(WATER_SHELF, 2)),
+            Collections.singletonList(MoneyFactory.createMoney(5))
+        );
+
+        Assertions.assertThat(status).isEqualTo(BasketStatus.NO_CHANGE);
+        Assertions.assertThat(subject.receiveItems()).isEmpty();
+        Assertions.assertThat(subject.receiveChangeMoney()).isEqualTo(MoneyFactory.createMoney(5));
+        Assertions.assertThat(subject.getProductCount(WATER_SHELF)).isEqualTo(3);
+        verify(fakeListener).onChangeFailure(WATER_SHELF, MoneyFactory.createMoney(4, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_empty_basket() {
+        subject.buyBasket(Collections.<BasketLine>emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_empty_line() {
+        new BasketLine(COOKIE_SHELF, 0);
+    }
+
+    @Test
+    public void huge_quantities_dont_overflow_stock_check() {
+        BasketStatus status = subject.buyBasket(Arrays.asList(
+            new BasketLine(WATER_SHELF, Integer.MAX_VALUE),
+            new BasketLine(WATER_SHELF, Integer.MAX_VALUE)
+        ));
+
+        Assertions.assertThat(status).isEqualTo(BasketStatus.NOT_ENOUGH_PRODUCTS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_basket_total_that_overflows() {
+        VendingMachine machine = new VendingMachine(
+            fakeDisplay,
+            new GreedyReturnAmountStrategy(),
+            Collections.singletonList(new VendingShelf(new ProductType(Money.ofCents(Long.MAX_VALUE / 2), "Gold"), 3)),
+            Configuration.getDefaultCoinSet()
+        );
+
+        machine.buyBasket(Collections.singletonList(new BasketLine(0, 3)));
+    }
+}
@@ -0,0 +1,107 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.strategy.BudgetedReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ChangeStatus;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class BudgetedReturnAmountStrategyTest {
+    private final long[] nonCanonical = {100, 300, 400};
+    private final int[] usedCoins = new int[3];
+
+    @Test
+    public void finds_fewest_coins_with_enough_budget() {
+        BudgetedReturnAmountStrategy subject = new BudgetedReturnAmountStrategy(1000);
+
+        Assertions.assertThat(subject.execute(nonCanonical, new int[]{2, 2, 1}, 600, usedCoins))
+            .isEqualTo(ChangeStatus.FOUND);
+        Assertions.assertThat(usedCoins).containsExactly(0, 2, 0);
+        Assertions.assertThat(subject.getUnprovenCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void returns_first_plan_when_budget_runs_out() {
+        BudgetedReturnAmountStrategy subject = new BudgetedReturnAmountStrategy(4);
+
+        Assertions.assertThat(subject.execute(nonCanonical, new int[]{2, 2, 1}, 600, usedCoins))
+            .isEqualTo(ChangeStatus.FOUND);
+        Assertions.assertThat(usedCoins).containsExactly(2, 0, 1);
+        Assertions.assertThat(subject.getUnprovenCount()).isEqualTo(1);
+        Assertions.assertThat(subject.getLastWork()).isEqualTo(4);
+    }
+
+    @Test
+    public void times_out_without_any_plan() {
+        BudgetedReturnAmountStrategy subject = new BudgetedReturnAmountStrategy(1);
+
+        Assertions.assertThat(subject.execute(nonCanonical, new int[]{2, 2, 1}, 600, usedCoins))
+            .isEqualTo(ChangeStatus.TIMED_OUT);
+        Assertions.assertThat(subject.getTimedOutCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void proves_impossible_within_budget() {
+        BudgetedReturnAmountStrategy subject = new BudgetedReturnAmountStrategy(10);
+
+        Assertions.assertThat(subject.execute(new long[]{200, 500}, new int[]{10, 10}, 300, usedCoins))
+            .isEqualTo(ChangeStatus.IMPOSSIBLE);
+        Assertions.assertThat(subject.getTimedOutCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void only_state_budget_is_deterministic() {
+        Assertions.assertThat(new BudgetedReturnAmountStrategy(10).isDeterministic()).isTrue();
+        Assertions.assertThat(new BudgetedReturnAmountStrategy(10, 1_000_000).isDeterministic()).isFalse();
+    }
+
+    @Test
+    public void uses_as_few_coins_as_any_plan() {
+        BudgetedReturnAmountStrategy subject = new BudgetedReturnAmountStrategy(Long.MAX_VALUE);
+        long[] denominations = {500, 300, 200, 70, 50, 10};
+        int[] actual = new int[denominations.length];
+        Random random = new Random(42);
+
+        for (int i = 0; i < 300; i++) {
+            int[] counts = new int[denominations.length];
+            for (int j = 0; j < counts.length; j++)
+                counts[j] = random.nextInt(5);
+            long amount = 10 * random.nextInt(150);
+
+            int fewest = fewestCoins(denominations, counts, 0, amount);
+            ChangeStatus status = subject.execute(denominations, counts, amount, actual);
+            if (fewest == Integer.MAX_VALUE) {
+                Assertions.assertThat(status).isEqualTo(ChangeStatus.IMPOSSIBLE);
+            } else {
+                Assertions.assertThat(status).isEqualTo(ChangeStatus.FOUND);
+                long paid = 0;
+                for (int j = 0; j < actual.length; j++) {
+                    Assertions.assertThat(actual[j]).isBetween(0, counts[j]);
+                    paid += actual[j] * denominations[j];
+                }
+                Assertions.assertThat(paid).isEqualTo(amount);
+                Assertions.assertThat(Arrays.stream(actual).sum()).isEqualTo(fewest);
+            }
+        }
+        Assertions.assertThat(subject.getCallCount()).isEqualTo(300);
+        Assertions.assertThat(subject.getPeakWork()).isPositive();
+        Assertions.assertThat(subject.getTotalWork()).isGreaterThanOrEqualTo(subject.getPeakWork());
+    }
+
+    // Tries every plan
+    private static int fewestCoins(long[] denominations, int[] counts, int index, long left) {
+        if (left == 0)
+            return 0;
+        if (index == denominations.length)
+            return Integer.MAX_VALUE;
+        int result = Integer.MAX_VALUE;
+        for (int used = 0; used <= counts[index] && used * denominations[index] <= left; used++) {
+            int rest = fewestCoins(denominations, counts, index + 1, left - used * denominations[index]);
+            if (rest != Integer.MAX_VALUE)
+                result = Math.min(result, rest + used);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package tdd.vendingMachine;
+
+import javafx.util.Pair;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import tdd.vendingMachine.strategy.CachingReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingReturnAmountStrategyTest {
+    @Mock
+    ReturnAmountByDenominationsStrategy fakeStrategy;
+
+    private final List<Pair<BigDecimal, Integer>> coins = Arrays.asList(
+        new Pair<>(MoneyFactory.createCoin(1), 2),
+        new Pair<>(MoneyFactory.createCoin(2), 1)
+    );
+
+    @Before
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        when(fakeStrategy.execute(any(long[].class), any(int[].class), anyLong(), any(int[].class)))
+            .thenAnswer(invocation -> {
+                ((int[]) invocation.getArguments()[3])[0] = 1;
+                return ChangeStatus.FOUND;
+            });
+    }
+
+    @Test
+    public void same_request_hits_cache() {
+        CachingReturnAmountStrategy subject = new CachingReturnAmountStrategy(fakeStrategy, 10);
+
+        Assertions.assertThat(subject.execute(coins, MoneyFactory.createMoney(1))).hasValue(Arrays.asList(1, 0));
+        Assertions.assertThat(subject.execute(coins, MoneyFactory.createMoney(1))).hasValue(Arrays.asList(1, 0));
+
+        verify(fakeStrategy, times(1)).execute(any(long[].class), any(int[].class), anyLong(), any(int[].class));
+        Assertions.assertThat(subject.getHits()).isEqualTo(1);
+        Assertions.assertThat(subject.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesnt_cache_timeouts() {
+        CachingReturnAmountStrategy subject = new CachingReturnAmountStrategy(fakeStrategy, 10);
+        doReturn(ChangeStatus.TIMED_OUT)
+            .when(fakeStrategy).execute(any(long[].class), any(int[].class), anyLong(), any(int[].class));
+
+        subject.execute(coins, MoneyFactory.createMoney(1));
+        subject.execute(coins, MoneyFactory.createMoney(1));
+
+        verify(fakeStrategy, times(2)).execute(any(long[].class), any(int[].class), anyLong(), any(int[].class));
+        Assertions.assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void different_coin_count_misses_cache() {
+        CachingReturnAmountStrategy subject = new CachingReturnAmountStrategy(fakeStrategy, 10);
+
+        subject.execute(coins, MoneyFactory.createMoney(1));
+        subject.execute(Collections.singletonList(new Pair<>(MoneyFactory.createCoin(1), 3)), MoneyFactory.createMoney(1));
+
+        Assertions.assertThat(subject.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    public void evicts_least_recently_used() {
+        CachingReturnAmountStrategy subject = new CachingReturnAmountStrategy(fakeStrategy, 2);
+
+        subject.execute(coins, MoneyFactory.createMoney(1));
+        subject.execute(coins, MoneyFactory.createMoney(2));
+        subject.execute(coins, MoneyFactory.createMoney(1));
+        subject.execute(coins, MoneyFactory.createMoney(3));
+        subject.execute(coins, MoneyFactory.createMoney(1));
+
+        Assertions.assertThat(subject.size()).isEqualTo(2);
+        Assertions.assertThat(subject.getEvictions()).isEqualTo(1);
+        Assertions.assertThat(subject.getHits()).isEqualTo(2);
+    }
+}
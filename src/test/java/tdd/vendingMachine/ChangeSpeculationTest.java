@@ -0,0 +1,68 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.strategy.ArrayReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ChangeStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class ChangeSpeculationTest {
+    private final CoinInventory coins = new CoinInventory(new long[]{100, 50, 10}, new int[]{0, 0, 5});
+    private final int[] usedCoins = new int[3];
+
+    private ChangeSpeculation speculate(int[] escrow, long price, long credit, Executor executor) {
+        return new ChangeSpeculation(coins, escrow, price, credit, new ArrayReturnAmountStrategy(), executor);
+    }
+
+    @Test
+    public void plans_change_for_coin_finishing_purchase() {
+        ChangeSpeculation subject = speculate(null, 120, 50, Runnable::run);
+
+        coins.add(Money.ofCents(100));
+
+        Assertions.assertThat(subject.lookup(coins, 30, usedCoins)).isEqualTo(ChangeStatus.FOUND);
+        Assertions.assertThat(usedCoins).containsExactly(0, 0, 3);
+    }
+
+    @Test
+    public void plans_impossible_change_too() {
+        ChangeSpeculation subject = speculate(null, 40, 0, Runnable::run);
+
+        coins.add(Money.ofCents(100));
+
+        Assertions.assertThat(subject.lookup(coins, 60, usedCoins)).isEqualTo(ChangeStatus.IMPOSSIBLE);
+    }
+
+    @Test
+    public void misses_when_coins_changed() {
+        ChangeSpeculation subject = speculate(null, 120, 50, Runnable::run);
+
+        coins.removeAll(new int[]{0, 0, 2});
+        coins.add(Money.ofCents(100));
+
+        Assertions.assertThat(subject.lookup(coins, 30, usedCoins)).isNull();
+    }
+
+    @Test
+    public void misses_until_calculated() {
+        List<Runnable> tasks = new ArrayList<>();
+        ChangeSpeculation subject = speculate(null, 120, 50, tasks::add);
+        coins.add(Money.ofCents(100));
+
+        Assertions.assertThat(subject.lookup(coins, 30, usedCoins)).isNull();
+        tasks.forEach(Runnable::run);
+        Assertions.assertThat(subject.lookup(coins, 30, usedCoins)).isEqualTo(ChangeStatus.FOUND);
+    }
+
+    @Test
+    public void counts_escrowed_coins() {
+        ChangeSpeculation subject = speculate(new int[]{0, 1, 0}, 120, 50, Runnable::run);
+
+        coins.addAll(new int[]{1, 1, 0});
+
+        Assertions.assertThat(subject.lookup(coins, 30, usedCoins)).isEqualTo(ChangeStatus.FOUND);
+    }
+}
@@ -0,0 +1,72 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class CoinInventoryTest {
+
+    @Test
+    public void finds_accepted_coins() {
+        CoinInventory subject = Configuration.getDefaultCoinSet();
+
+        Assertions.assertThat(subject.indexOf(500)).isEqualTo(0);
+        Assertions.assertThat(subject.indexOf(10)).isEqualTo(5);
+    }
+
+    @Test
+    public void rejects_unknown_coins() {
+        CoinInventory subject = Configuration.getDefaultCoinSet();
+
+        Assertions.assertThat(subject.indexOf(30)).isEqualTo(-1);
+        Assertions.assertThat(subject.indexOf(15)).isEqualTo(-1);
+        Assertions.assertThat(subject.indexOf(1000)).isEqualTo(-1);
+        Assertions.assertThat(subject.add(MoneyFactory.createMoney(3))).isFalse();
+    }
+
+    @Test
+    public void adds_and_removes_plans() {
+        CoinInventory subject = new CoinInventory(new long[]{100, 200}, new int[]{1, 1});
+
+        Assertions.assertThat(subject.add(MoneyFactory.createMoney(2))).isTrue();
+        subject.addAll(new int[]{2, 0});
+        subject.removeAll(new int[]{1, 2});
+
+        Assertions.assertThat(subject.getCounts()).containsExactly(2, 0);
+        Assertions.assertThat(subject.getTotal()).isEqualTo(MoneyFactory.createMoney(2));
+    }
+
+    @Test
+    public void counts_are_snapshots() {
+        CoinInventory subject = new CoinInventory(new long[]{100}, new int[]{1});
+
+        int[] counts = subject.getCounts();
+        counts[0] = 10;
+
+        Assertions.assertThat(subject.getCount(0)).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicated_denominations_rejected() {
+        new CoinInventory(new long[]{100, 100}, new int[]{1, 1});
+    }
+
+    @Test
+    public void finds_coins_too_far_apart_for_table() {
+        CoinInventory subject = new CoinInventory(new long[]{1_000_000_000_000L, 1, 7_919}, new int[]{0, 0, 0});
+
+        Assertions.assertThat(subject.indexOf(1_000_000_000_000L)).isEqualTo(0);
+        Assertions.assertThat(subject.indexOf(1)).isEqualTo(1);
+        Assertions.assertThat(subject.indexOf(7_919)).isEqualTo(2);
+        Assertions.assertThat(subject.indexOf(7_920)).isEqualTo(-1);
+        Assertions.assertThat(subject.indexOf(2_000_000_000_000L)).isEqualTo(-1);
+
+        // Too many amounts to track, left to the strategy
+        subject.trackReachable(2_000_000_000_000L);
+        Assertions.assertThat(subject.mayPay(1_000_000_000_000L)).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicated_denominations_rejected_without_table() {
+        new CoinInventory(new long[]{1, 5_000, 5_000}, new int[]{1, 1, 1});
+    }
+}
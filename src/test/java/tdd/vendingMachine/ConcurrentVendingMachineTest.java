@@ -0,0 +1,111 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.verify;
+
+public class ConcurrentVendingMachineTest {
+    @Mock
+    VendingDisplay fakeDisplay;
+
+    private final ProductType fakeProduct = new ProductType(MoneyFactory.createMoney(1, 5), "fake product");
+
+    @Before
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void sessions_keep_their_own_credit() {
+        ConcurrentVendingMachine subject = machine(2, new int[]{0, 0, 1});
+        VendingSession first = subject.openSession(fakeDisplay);
+        VendingSession second = subject.openSession(fakeDisplay);
+
+        first.selectShelf(0);
+        second.selectShelf(0);
+        first.insertCoin(MoneyFactory.createMoney(1));
+        second.insertCoin(MoneyFactory.createMoney(2));
+
+        Assertions.assertThat(first.receiveItem()).isNull();
+        Assertions.assertThat(second.receiveItem()).isEqualTo(fakeProduct);
+        Assertions.assertThat(second.receiveChangeMoney()).isEqualTo(MoneyFactory.createMoney(0, 5));
+
+        first.cancelOrder();
+        Assertions.assertThat(first.receiveChangeMoney()).isEqualTo(MoneyFactory.createMoney(1));
+        Assertions.assertThat(subject.getProductCount(0)).isEqualTo(1);
+    }
+
+    @Test
+    public void doesnt_sell_if_cant_give_change() {
+        ConcurrentVendingMachine subject = machine(1, new int[]{0, 0, 0});
+        VendingSession session = subject.openSession(fakeDisplay);
+
+        session.selectShelf(0);
+        session.insertCoin(MoneyFactory.createMoney(2));
+
+        verify(fakeDisplay).displayString(contains("Warning"));
+        Assertions.assertThat(session.receiveItem()).isNull();
+        Assertions.assertThat(session.receiveChangeMoney()).isEqualTo(MoneyFactory.createMoney(2));
+        Assertions.assertThat(subject.getProductCount(0)).isEqualTo(1);
+        Assertions.assertThat(subject.getCoins().getTotal()).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    public void parallel_customers_never_oversell() throws Exception {
+        final int stock = 500;
+        final int customers = 8;
+        ConcurrentVendingMachine subject = machine(stock, new int[]{0, 0, stock});
+        Money initialCoins = subject.getCoins().getTotal();
+
+        ExecutorService executor = Executors.newFixedThreadPool(customers);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < customers; i++) {
+            tasks.add(() -> {
+                VendingSession session = subject.openSession(fakeDisplay);
+                int bought = 0;
+                for (int j = 0; j < stock; j++) {
+                    session.selectShelf(0);
+                    session.insertCoin(MoneyFactory.createMoney(2));
+                    if (session.receiveItem() != null)
+                        bought++;
+                    else
+                        session.cancelOrder();
+                }
+                return bought;
+            });
+        }
+
+        int sold = 0;
+        for (Future<Integer> result : executor.invokeAll(tasks))
+            sold += result.get();
+        executor.shutdown();
+
+        Assertions.assertThat(sold).isEqualTo(stock);
+        Assertions.assertThat(subject.getProductCount(0)).isEqualTo(0);
+        Assertions.assertThat(subject.getCoins().getTotal())
+            .isEqualTo(initialCoins.add(Money.ofCents(fakeProduct.getPriceMoney().getCents() * stock)));
+    }
+
+    private ConcurrentVendingMachine machine(int productCount, int[] coinCounts) {
+        return new ConcurrentVendingMachine(
+            GreedyReturnAmountStrategy::new,
+            Collections.singletonList(new VendingShelf(fakeProduct, productCount)),
+            new CoinInventory(new long[]{200, 100, 50}, coinCounts)
+        );
+    }
+}
@@ -0,0 +1,45 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.simulation.FleetSimulation;
+import tdd.vendingMachine.simulation.SimulationStatistics;
+import tdd.vendingMachine.simulation.WorkloadProfile;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class FleetSimulationTest {
+    private final FleetSimulation subject = new FleetSimulation(WorkloadProfile.defaultProfile());
+
+    @Test
+    public void same_seed_same_statistics_regardless_of_parallelism() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+
+        SimulationStatistics sequential = subject.run(100, 42, single).getStatistics();
+        SimulationStatistics parallel = subject.run(100, 42, many).getStatistics();
+
+        single.shutdown();
+        many.shutdown();
+        Assertions.assertThat(parallel).isEqualTo(sequential);
+    }
+
+    @Test
+    public void different_seed_different_statistics() {
+        Assertions.assertThat(subject.run(20, 1).getStatistics()).isNotEqualTo(subject.run(20, 2).getStatistics());
+    }
+
+    @Test
+    public void machines_sell_until_empty() {
+        SimulationStatistics statistics = subject.run(50, 7).getStatistics();
+
+        Assertions.assertThat(statistics.getMachines()).isEqualTo(50);
+        Assertions.assertThat(statistics.getSales()).isPositive();
+        // Default machine holds 15 products and a day of customers is more than enough to empty it
+        Assertions.assertThat(statistics.getSales()).isLessThanOrEqualTo(50 * 15);
+        Assertions.assertThat(statistics.getStockOuts()).isPositive();
+        // Every customer ends with exactly one of them
+        Assertions.assertThat(statistics.getSales() + statistics.getCancels() + statistics.getStockOuts())
+            .isEqualTo(statistics.getCustomers());
+    }
+}
@@ -0,0 +1,205 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.fleet.FleetStore;
+import tdd.vendingMachine.fleet.MachineView;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class FleetStoreTest {
+    private static final long[] COINS = {5, 10, 20, 50, 100, 200, 500, 1000};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static MachineView view(FleetStore store) {
+        return store.view(new NullVendingDisplay(), new GreedyReturnAmountStrategy());
+    }
+
+    @Test
+    public void packs_default_machine_into_88_bytes() {
+        FleetStore store = FleetStore.allocate(
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet(),
+            1000
+        );
+
+        Assertions.assertThat(store.getRecordSize()).isEqualTo(88);
+        Assertions.assertThat(store.getMachineCount()).isEqualTo(1000);
+    }
+
+    @Test
+    public void machines_start_like_template_and_stay_independent() {
+        FleetStore store = FleetStore.allocate(
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet(),
+            3
+        );
+        MachineView view = view(store);
+
+        view.moveTo(1).selectShelf(0);
+        view.insertCoin(Money.ofCents(200));
+
+        view.moveTo(0);
+        Assertions.assertThat(view.getCredit()).isEqualTo(Money.ZERO);
+        Assertions.assertThat(view.getPendingItemCount()).isEqualTo(0);
+        Assertions.assertThat(view.getCoins().getCounts())
+            .isEqualTo(Configuration.getDefaultCoinSet().getCounts());
+        view.moveTo(2);
+        Assertions.assertThat(view.getProductCount(0))
+            .isEqualTo(Configuration.getDefaultShelfSet().get(0).getProductCount());
+        view.moveTo(1);
+        Assertions.assertThat(view.getPendingItemCount()).isEqualTo(1);
+        Assertions.assertThat(view.getPendingChange())
+            .isEqualTo(Money.ofCents(200).subtract(view.getProductType(0).getPriceMoney()));
+    }
+
+    @Test
+    public void view_behaves_like_machine() {
+        List<VendingShelf> shelves = new ArrayList<>();
+        shelves.add(new VendingShelf(new ProductType(Money.ofCents(120), "Cola"), 3));
+        shelves.add(new VendingShelf(new ProductType(Money.ofCents(85), "Chips"), 2));
+        shelves.add(new VendingShelf(new ProductType(Money.ofCents(300), "Sandwich"), 1));
+        CoinInventory coins = new CoinInventory(COINS, new int[]{2, 2, 1, 1, 1, 0, 0, 0});
+        VendingMachine machine = new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            shelves,
+            coins
+        );
+        FleetStore store = FleetStore.allocate(shelves, coins, 2);
+        MachineView view = view(store).moveTo(1);
+
+        Random random = new Random(7);
+        List<ProductType> machineItems = new ArrayList<>();
+        List<ProductType> viewItems = new ArrayList<>();
+        for (int step = 0; step < 2000; step++) {
+            switch (random.nextInt(10)) {
+                case 0:
+                case 1:
+                    int shelf = random.nextInt(shelves.size());
+                    machine.selectShelf(shelf);
+                    view.selectShelf(shelf);
+                    break;
+                case 2:
+                    machine.cancelOrder();
+                    view.cancelOrder();
+                    break;
+                case 3:
+                    addIfPresent(machineItems, machine.receiveItem());
+                    addIfPresent(viewItems, view.receiveItem());
+                    break;
+                case 4:
+                    Assertions.assertThat(view.receiveChangeMoney()).isEqualTo(machine.receiveChangeMoney());
+                    break;
+                case 5:
+                    machine.restockShelf(step % shelves.size(), 1);
+                    view.restockShelf(step % shelves.size(), 1);
+                    break;
+                default:
+                    // Sometimes a coin the machine doesn't take
+                    Money coin = Money.ofCents(random.nextInt(8) == 0 ? 3 : COINS[random.nextInt(COINS.length)]);
+                    machine.insertCoin(coin);
+                    view.insertCoin(coin);
+            }
+
+            Assertions.assertThat(view.getCredit()).isEqualTo(machine.getCredit());
+            Assertions.assertThat(view.getPendingChange()).isEqualTo(machine.getPendingChange());
+            Assertions.assertThat(view.getPendingItemCount()).isEqualTo(machine.getPendingItemCount());
+            Assertions.assertThat(view.getCoins().getCounts()).isEqualTo(machine.getCoins().getCounts());
+            for (int i = 0; i < shelves.size(); i++)
+                Assertions.assertThat(view.getProductCount(i)).isEqualTo(machine.getProductCount(i));
+        }
+        // The tray gives items in a different order, the same ones in the end
+        machineItems.addAll(machine.receiveItems());
+        for (ProductType item = view.receiveItem(); item != null; item = view.receiveItem())
+            viewItems.add(item);
+        machineItems.sort(Comparator.comparing(ProductType::getName));
+        viewItems.sort(Comparator.comparing(ProductType::getName));
+        Assertions.assertThat(viewItems).isEqualTo(machineItems).isNotEmpty();
+
+        view.moveTo(0);
+        Assertions.assertThat(view.getCoins().getCounts()).isEqualTo(coins.getCounts());
+    }
+
+    @Test
+    public void mapped_fleet_keeps_machines_between_runs() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("fleet.dat");
+        List<VendingShelf> shelves = Configuration.getDefaultShelfSet();
+        CoinInventory coins = Configuration.getDefaultCoinSet();
+
+        try (FleetStore store = FleetStore.map(path, shelves, coins, 10_000)) {
+            MachineView view = view(store).moveTo(9_999);
+            view.selectShelf(1);
+            view.insertCoin(Money.ofCents(50));
+        }
+
+        try (FleetStore store = FleetStore.map(path, shelves, coins, 10_000)) {
+            MachineView view = view(store).moveTo(9_999);
+            Assertions.assertThat(view.getCredit()).isEqualTo(Money.ofCents(50));
+            view.cancelOrder();
+            Assertions.assertThat(view.receiveChangeMoney()).isEqualTo(Money.ofCents(50));
+            Assertions.assertThat(view.moveTo(0).getCredit()).isEqualTo(Money.ZERO);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void refuses_file_of_other_fleet() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("fleet.dat");
+        List<VendingShelf> shelves = Configuration.getDefaultShelfSet();
+        CoinInventory coins = Configuration.getDefaultCoinSet();
+
+        FleetStore.map(path, shelves, coins, 10).close();
+        FleetStore.map(path, shelves, coins, 11);
+    }
+
+    @Test(expected = IOException.class)
+    public void refuses_file_of_fleet_with_other_prices() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("fleet.dat");
+        List<VendingShelf> shelves = Configuration.getDefaultShelfSet();
+        CoinInventory coins = Configuration.getDefaultCoinSet();
+        FleetStore.map(path, shelves, coins, 10).close();
+
+        // Same record size, only the price of the first shelf differs
+        List<VendingShelf> repriced = new ArrayList<>(shelves);
+        repriced.set(0, new VendingShelf(new ProductType(Money.ofCents(1), "Gum"), shelves.get(0).getProductCount()));
+        FleetStore.map(path, repriced, coins, 10);
+    }
+
+    @Test(expected = IOException.class)
+    public void refuses_file_that_is_not_a_fleet() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("fleet.dat");
+        List<VendingShelf> shelves = Configuration.getDefaultShelfSet();
+        CoinInventory coins = Configuration.getDefaultCoinSet();
+        Files.write(path, new byte[FleetStore.allocate(shelves, coins, 1).getRecordSize() * 10]);
+
+        FleetStore.map(path, shelves, coins, 10);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void refuses_machine_outside_fleet() {
+        FleetStore store = FleetStore.allocate(
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet(),
+            3
+        );
+
+        view(store).moveTo(3);
+    }
+
+    private static void addIfPresent(List<ProductType> items, ProductType item) {
+        if (item != null)
+            items.add(item);
+    }
+}
@@ -0,0 +1,59 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.simulation.FloatOptimizationResult;
+import tdd.vendingMachine.simulation.FloatOptimizer;
+import tdd.vendingMachine.simulation.WorkloadProfile;
+import tdd.vendingMachine.strategy.ArrayReturnAmountStrategy;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class FloatOptimizerTest {
+    private final long[] denominations = Configuration.getDefaultCoinSet().getDenominations();
+    private final FloatOptimizer subject = new FloatOptimizer(
+        Configuration.getDefaultShelfSet(),
+        denominations,
+        WorkloadProfile.defaultProfile(),
+        ArrayReturnAmountStrategy::new
+    );
+
+    @Test
+    public void finds_float_meeting_target() {
+        FloatOptimizationResult result = subject.optimize(0.01, 6, 20, 42);
+
+        Assertions.assertThat(result.isFound()).isTrue();
+        Assertions.assertThat(result.getFailureRate()).isLessThanOrEqualTo(0.01);
+        Assertions.assertThat(result.getPruned()).isPositive();
+    }
+
+    @Test
+    public void found_float_is_confirmed_by_full_simulation() {
+        FloatOptimizationResult result = subject.optimize(0.01, 6, 20, 42);
+
+        Assertions.assertThat(subject.evaluate(result.getCoins().getCounts(), 20, 42))
+            .isEqualTo(result.getFailureRate());
+        Assertions.assertThat(subject.evaluate(new int[denominations.length], 20, 42)).isGreaterThan(0.01);
+    }
+
+    @Test
+    public void same_result_regardless_of_parallelism() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+
+        FloatOptimizationResult sequential = subject.optimize(0.02, 6, 10, 7, single);
+        FloatOptimizationResult parallel = subject.optimize(0.02, 6, 10, 7, many);
+
+        single.shutdown();
+        many.shutdown();
+        Assertions.assertThat(parallel.getCoins().getCounts()).isEqualTo(sequential.getCoins().getCounts());
+    }
+
+    @Test
+    public void reports_when_no_float_is_enough() {
+        FloatOptimizationResult result = subject.optimize(0, 0, 5, 1);
+
+        Assertions.assertThat(result.isFound()).isFalse();
+        Assertions.assertThat(result.getEvaluated()).isEqualTo(1);
+    }
+}
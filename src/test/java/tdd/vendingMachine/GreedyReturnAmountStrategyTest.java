@@ -0,0 +1,99 @@
+package tdd.vendingMachine;
+
+import javafx.util.Pair;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.util.Arrays;
+
+public class GreedyReturnAmountStrategyTest {
+    private GreedyReturnAmountStrategy subject;
+
+    @Before
+    public void before() {
+        subject = new GreedyReturnAmountStrategy();
+    }
+
+    @Test
+    public void default_coins_are_canonical() {
+        Assertions.assertThat(GreedyReturnAmountStrategy.isCanonical(new long[]{500, 200, 100, 50, 20, 10})).isTrue();
+    }
+
+    @Test
+    public void detects_non_canonical_coins() {
+        Assertions.assertThat(GreedyReturnAmountStrategy.isCanonical(new long[]{100, 300, 400})).isFalse();
+    }
+
+    @Test
+    public void coins_without_smallest_step_are_not_canonical() {
+        Assertions.assertThat(GreedyReturnAmountStrategy.isCanonical(new long[]{300, 500})).isFalse();
+    }
+
+    @Test
+    public void greedy_path() {
+        Assertions.assertThat(subject.execute(
+            Configuration.getDefaultCoinSet().toPairs(),
+            MoneyFactory.createMoney(8, 7)
+        )).hasValue(Arrays.asList(1, 1, 1, 1, 1, 0));
+        Assertions.assertThat(subject.getGreedyCount()).isEqualTo(1);
+        Assertions.assertThat(subject.getFallbackCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void falls_back_when_coins_run_out() {
+        Assertions.assertThat(subject.execute(
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(5), 1),
+                new Pair<>(MoneyFactory.createCoin(2), 3),
+                new Pair<>(MoneyFactory.createCoin(1), 0)
+            ),
+            MoneyFactory.createMoney(6)
+        )).hasValue(Arrays.asList(0, 3, 0));
+        Assertions.assertThat(subject.getGreedyCount()).isEqualTo(0);
+        Assertions.assertThat(subject.getFallbackCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void falls_back_when_greedy_plan_isnt_minimal() {
+        int[] usedCoins = new int[6];
+
+        ChangeStatus status = subject.execute(
+            new long[]{500, 200, 100, 50, 20, 10},
+            new int[]{1, 3, 0, 0, 0, 10},
+            600,
+            usedCoins
+        );
+
+        Assertions.assertThat(status).isEqualTo(ChangeStatus.FOUND);
+        Assertions.assertThat(usedCoins).containsExactly(0, 3, 0, 0, 0, 0);
+        Assertions.assertThat(subject.getGreedyCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void keeps_greedy_plan_when_fallback_finds_none() {
+        subject = new GreedyReturnAmountStrategy((denominations, counts, amount, usedCoins) -> ChangeStatus.IMPOSSIBLE);
+        int[] usedCoins = new int[3];
+
+        ChangeStatus status = subject.execute(new long[]{500, 200, 100}, new int[]{1, 0, 5}, 800, usedCoins);
+
+        Assertions.assertThat(status).isEqualTo(ChangeStatus.FOUND);
+        Assertions.assertThat(usedCoins).containsExactly(1, 0, 3);
+        Assertions.assertThat(subject.getFallbackCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void falls_back_for_non_canonical_coins() {
+        Assertions.assertThat(subject.execute(
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(1), 2),
+                new Pair<>(MoneyFactory.createCoin(3), 2),
+                new Pair<>(MoneyFactory.createCoin(4), 1)
+            ),
+            MoneyFactory.createMoney(6)
+        )).hasValue(Arrays.asList(0, 2, 0));
+        Assertions.assertThat(subject.getFallbackCount()).isEqualTo(1);
+    }
+}
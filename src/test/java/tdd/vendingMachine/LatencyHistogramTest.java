@@ -0,0 +1,71 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.metrics.LatencyHistogram;
+import tdd.vendingMachine.metrics.LatencySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LatencyHistogramTest {
+    private final LatencyHistogram subject = new LatencyHistogram();
+
+    @Test
+    public void empty_histogram_reports_zeros() {
+        LatencySnapshot snapshot = subject.snapshot();
+
+        Assertions.assertThat(snapshot.getCount()).isZero();
+        Assertions.assertThat(snapshot.getP99()).isZero();
+        Assertions.assertThat(snapshot.getMax()).isZero();
+    }
+
+    @Test
+    public void small_values_are_exact() {
+        for (int i = 1; i <= 20; i++)
+            subject.record(i);
+
+        Assertions.assertThat(subject.getValueAtPercentile(50)).isEqualTo(10);
+        Assertions.assertThat(subject.getValueAtPercentile(100)).isEqualTo(20);
+    }
+
+    @Test
+    public void percentiles_are_within_bucket_precision() {
+        for (long i = 1; i <= 100_000; i++)
+            subject.record(i * 1000);
+
+        LatencySnapshot snapshot = subject.snapshot();
+        Assertions.assertThat(snapshot.getCount()).isEqualTo(100_000);
+        Assertions.assertThat(snapshot.getMean()).isEqualTo(50_000_500);
+        Assertions.assertThat(snapshot.getP50()).isBetween(50_000_000L, 50_000_000L + 50_000_000L / 16);
+        Assertions.assertThat(snapshot.getP99()).isBetween(99_000_000L, 99_000_000L + 99_000_000L / 16);
+        Assertions.assertThat(snapshot.getMax()).isEqualTo(100_000_000L);
+    }
+
+    @Test
+    public void handles_extreme_values() {
+        subject.record(-5);
+        subject.record(Long.MAX_VALUE);
+
+        Assertions.assertThat(subject.getValueAtPercentile(0)).isZero();
+        Assertions.assertThat(subject.getValueAtPercentile(100)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void records_from_many_threads() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++)
+                    subject.record(i);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Assertions.assertThat(subject.getCount()).isEqualTo(40_000);
+        Assertions.assertThat(subject.getMax()).isEqualTo(9_999);
+    }
+}
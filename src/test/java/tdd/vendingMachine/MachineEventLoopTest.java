@@ -0,0 +1,107 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Test;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.loop.MachineEventLoop;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class MachineEventLoopTest {
+    private final VendingMachine machine = new VendingMachine(
+        new NullVendingDisplay(),
+        new GreedyReturnAmountStrategy(),
+        Configuration.getDefaultShelfSet(),
+        Configuration.getDefaultCoinSet()
+    );
+    private final MachineEventLoop subject = new MachineEventLoop(machine, 8);
+
+    @After
+    public void after() {
+        subject.close();
+    }
+
+    @Test
+    public void applies_commands_in_order() throws Exception {
+        subject.selectShelf(1);
+        subject.insertCoin(Money.ofCents(100));
+        subject.insertCoin(Money.ofCents(100));
+
+        Assertions.assertThat(subject.receiveItem().get().getName()).isEqualTo("Cookie");
+        Assertions.assertThat(subject.receiveChange().get()).isEqualTo(Money.ofCents(50));
+    }
+
+    @Test
+    public void takes_commands_from_many_threads() throws Exception {
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<?>> done = new ArrayList<>();
+        for (int producer = 0; producer < 4; producer++)
+            done.add(producers.submit(() -> {
+                for (int i = 0; i < 1000; i++)
+                    subject.insertCoin(Money.ofCents(10));
+            }));
+        for (Future<?> future : done)
+            future.get();
+        producers.shutdown();
+
+        subject.cancelOrder();
+        Assertions.assertThat(subject.receiveChange().get()).isEqualTo(Money.ofCents(40000));
+        Assertions.assertThat(subject.getEventCount()).isEqualTo(4002);
+        Assertions.assertThat(subject.getBatchCount()).isBetween(1L, 4002L);
+    }
+
+    @Test
+    public void failed_command_fails_only_its_future() throws Exception {
+        CompletableFuture<Void> failed = subject.selectShelf(99);
+        subject.insertCoin(Money.ofCents(50));
+        subject.cancelOrder();
+
+        Assertions.assertThat(subject.receiveChange().get()).isEqualTo(Money.ofCents(50));
+        Assertions.assertThat(failed.isCompletedExceptionally()).isTrue();
+    }
+
+    @Test(timeout = 10_000)
+    public void survives_errors_of_the_machine() throws Exception {
+        VendingDisplay display = mock(VendingDisplay.class);
+        doThrow(new AssertionError("Broken display")).when(display).displayString(anyString());
+        VendingMachine broken = new VendingMachine(
+            display,
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet()
+        );
+        try (MachineEventLoop loop = new MachineEventLoop(broken, 8)) {
+            CompletableFuture<Void> failed = loop.cancelOrder();
+
+            Assertions.assertThat(loop.receiveChange().get()).isEqualTo(Money.ZERO);
+            Assertions.assertThat(failed.isCompletedExceptionally()).isTrue();
+        }
+    }
+
+    @Test
+    public void applies_published_commands_before_closing() throws Exception {
+        CompletableFuture<Void> inserted = subject.insertCoin(Money.ofCents(50));
+        subject.close();
+
+        inserted.get();
+        Assertions.assertThat(machine.getCredit()).isEqualTo(Money.ofCents(50));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejects_commands_after_closing() {
+        subject.close();
+        subject.cancelOrder();
+    }
+}
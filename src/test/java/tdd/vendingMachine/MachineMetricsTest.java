@@ -0,0 +1,99 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.metrics.InstrumentedReturnAmountStrategy;
+import tdd.vendingMachine.metrics.InstrumentedVendingDisplay;
+import tdd.vendingMachine.metrics.MachineMetrics;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+public class MachineMetricsTest {
+    private final MachineMetrics metrics = new MachineMetrics();
+
+    private VendingMachine createMachine(CoinInventory coins) {
+        VendingMachine machine = new VendingMachine(
+            new InstrumentedVendingDisplay(new NullVendingDisplay(), metrics.getDisplayHistogram()),
+            new InstrumentedReturnAmountStrategy(new GreedyReturnAmountStrategy(), metrics.getChangeHistogram()),
+            Configuration.getDefaultShelfSet(),
+            coins
+        );
+        machine.setMetrics(metrics);
+        return machine;
+    }
+
+    @Test
+    public void records_purchases_and_cancels() {
+        VendingMachine machine = createMachine(Configuration.getDefaultCoinSet());
+
+        machine.selectShelf(3);
+        machine.insertCoin(MoneyFactory.createMoney(1));
+        machine.selectShelf(0);
+        machine.insertCoin(MoneyFactory.createMoney(1));
+        machine.cancelOrder();
+
+        Assertions.assertThat(metrics.getSales()).isEqualTo(1);
+        Assertions.assertThat(metrics.getCancels()).isEqualTo(1);
+        Assertions.assertThat(metrics.getPurchaseLatency().getCount()).isEqualTo(1);
+        Assertions.assertThat(metrics.getCancelLatency().getCount()).isEqualTo(1);
+        // Change for the sale and for the cancel
+        Assertions.assertThat(metrics.getChangeLatency().getCount()).isEqualTo(2);
+        Assertions.assertThat(metrics.getDisplayLatency().getCount()).isPositive();
+    }
+
+    @Test
+    public void records_change_failures_and_stock_outs() {
+        VendingMachine machine = createMachine(new CoinInventory(new long[]{100, 10}, new int[]{0, 6}));
+
+        // Water for 0.40, the first sale takes all the 0.10 coins
+        machine.selectShelf(3);
+        machine.insertCoin(MoneyFactory.createMoney(1));
+        machine.selectShelf(3);
+        machine.insertCoin(MoneyFactory.createMoney(1));
+        for (int sale = 0; sale < 2; sale++) {
+            machine.selectShelf(3);
+            for (int i = 0; i < 4; i++)
+                machine.insertCoin(MoneyFactory.createMoney(0, 1));
+        }
+        machine.selectShelf(3);
+
+        Assertions.assertThat(metrics.getSales()).isEqualTo(3);
+        Assertions.assertThat(metrics.getChangeFailures()).isEqualTo(1);
+        Assertions.assertThat(metrics.getStockOuts()).isEqualTo(1);
+    }
+
+    @Test
+    public void exposed_over_jmx() throws JMException {
+        VendingMachine machine = createMachine(Configuration.getDefaultCoinSet());
+        machine.selectShelf(3);
+        machine.insertCoin(MoneyFactory.createMoney(1));
+
+        ObjectName name = metrics.register("jmx test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            Assertions.assertThat(server.getAttribute(name, "Sales")).isEqualTo(1L);
+            CompositeData latency = (CompositeData) server.getAttribute(name, "PurchaseLatency");
+            Assertions.assertThat(latency.get("count")).isEqualTo(1L);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void machine_without_metrics_records_nothing() {
+        VendingMachine machine = createMachine(Configuration.getDefaultCoinSet());
+        machine.setMetrics(null);
+
+        machine.selectShelf(3);
+        machine.insertCoin(MoneyFactory.createMoney(1));
+
+        Assertions.assertThat(metrics.getSales()).isZero();
+        Assertions.assertThat(metrics.getPurchaseLatency().getCount()).isZero();
+    }
+}
@@ -0,0 +1,179 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.server.MachineProtocol;
+import tdd.vendingMachine.server.MachineServer;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class MachineServerTest {
+    private MachineServer subject;
+    private SocketChannel client;
+
+    @Before
+    public void before() throws IOException {
+        subject = new MachineServer(
+            Arrays.asList(machine(), machine()),
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)
+        );
+        client = SocketChannel.open(subject.getAddress());
+    }
+
+    @After
+    public void after() throws IOException {
+        client.close();
+        subject.close();
+    }
+
+    private static VendingMachine machine() {
+        return new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet()
+        );
+    }
+
+    @Test
+    public void answers_pipelined_purchase_in_order() throws IOException {
+        ByteBuffer requests = ByteBuffer.allocateDirect(5 * MachineProtocol.REQUEST_SIZE);
+        MachineProtocol.putRequest(requests, MachineProtocol.SELECT_SHELF, 1, 1, 10);
+        MachineProtocol.putRequest(requests, MachineProtocol.INSERT_COIN, 1, 100, 11);
+        MachineProtocol.putRequest(requests, MachineProtocol.INSERT_COIN, 1, 100, 12);
+        MachineProtocol.putRequest(requests, MachineProtocol.RECEIVE_ITEM, 1, 0, 13);
+        MachineProtocol.putRequest(requests, MachineProtocol.RECEIVE_CHANGE, 1, 0, 14);
+
+        ByteBuffer responses = send(requests, 5);
+
+        Assertions.assertThat(MachineProtocol.getTag(responses, 0)).isEqualTo(10);
+        Assertions.assertThat(MachineProtocol.getFirst(responses, MachineProtocol.RESPONSE_SIZE)).isEqualTo(100);
+        int item = 3 * MachineProtocol.RESPONSE_SIZE;
+        Assertions.assertThat(MachineProtocol.getOpcode(responses, item)).isEqualTo(MachineProtocol.RECEIVE_ITEM);
+        Assertions.assertThat(MachineProtocol.getArgument(responses, item)).isEqualTo(1);
+        Assertions.assertThat(MachineProtocol.getFirst(responses, item)).isEqualTo(150);
+        int change = 4 * MachineProtocol.RESPONSE_SIZE;
+        Assertions.assertThat(MachineProtocol.getStatus(responses, change)).isEqualTo(MachineProtocol.OK);
+        Assertions.assertThat(MachineProtocol.getFirst(responses, change)).isEqualTo(50);
+        Assertions.assertThat(MachineProtocol.getTag(responses, change)).isEqualTo(14);
+    }
+
+    @Test
+    public void keeps_machines_apart() throws IOException {
+        ByteBuffer requests = ByteBuffer.allocateDirect(2 * MachineProtocol.REQUEST_SIZE);
+        MachineProtocol.putRequest(requests, MachineProtocol.INSERT_COIN, 0, 50, 1);
+        MachineProtocol.putRequest(requests, MachineProtocol.QUERY_STATE, 1, 0, 2);
+
+        ByteBuffer responses = send(requests, 2);
+
+        Assertions.assertThat(MachineProtocol.getFirst(responses, 0)).isEqualTo(50);
+        Assertions.assertThat(MachineProtocol.getMachine(responses, MachineProtocol.RESPONSE_SIZE)).isEqualTo(1);
+        Assertions.assertThat(MachineProtocol.getFirst(responses, MachineProtocol.RESPONSE_SIZE)).isEqualTo(0);
+    }
+
+    @Test
+    public void reports_bad_requests_and_goes_on() throws IOException {
+        ByteBuffer requests = ByteBuffer.allocateDirect(4 * MachineProtocol.REQUEST_SIZE);
+        MachineProtocol.putRequest(requests, MachineProtocol.QUERY_STATE, 7, 0, 1);
+        MachineProtocol.putRequest(requests, MachineProtocol.SELECT_SHELF, 0, 99, 2);
+        MachineProtocol.putRequest(requests, (byte) 42, 0, 0, 3);
+        MachineProtocol.putRequest(requests, MachineProtocol.QUERY_STATE, 0, 0, 4);
+
+        ByteBuffer responses = send(requests, 4);
+
+        Assertions.assertThat(MachineProtocol.getStatus(responses, 0)).isEqualTo(MachineProtocol.UNKNOWN_MACHINE);
+        Assertions.assertThat(MachineProtocol.getStatus(responses, MachineProtocol.RESPONSE_SIZE))
+            .isEqualTo(MachineProtocol.BAD_REQUEST);
+        Assertions.assertThat(MachineProtocol.getStatus(responses, 2 * MachineProtocol.RESPONSE_SIZE))
+            .isEqualTo(MachineProtocol.BAD_REQUEST);
+        Assertions.assertThat(MachineProtocol.getStatus(responses, 3 * MachineProtocol.RESPONSE_SIZE))
+            .isEqualTo(MachineProtocol.OK);
+    }
+
+    @Test
+    public void rejects_coins_without_value() throws IOException {
+        ByteBuffer requests = ByteBuffer.allocateDirect(3 * MachineProtocol.REQUEST_SIZE);
+        MachineProtocol.putRequest(requests, MachineProtocol.INSERT_COIN, 0, 0, 1);
+        MachineProtocol.putRequest(requests, MachineProtocol.INSERT_COIN, 0, -500, 2);
+        MachineProtocol.putRequest(requests, MachineProtocol.RECEIVE_CHANGE, 0, 0, 3);
+
+        ByteBuffer responses = send(requests, 3);
+
+        Assertions.assertThat(MachineProtocol.getStatus(responses, 0)).isEqualTo(MachineProtocol.BAD_REQUEST);
+        Assertions.assertThat(MachineProtocol.getStatus(responses, MachineProtocol.RESPONSE_SIZE))
+            .isEqualTo(MachineProtocol.BAD_REQUEST);
+        Assertions.assertThat(MachineProtocol.getFirst(responses, 2 * MachineProtocol.RESPONSE_SIZE)).isEqualTo(0);
+    }
+
+    @Test(timeout = 10_000)
+    public void survives_errors_of_the_machine() throws IOException {
+        VendingDisplay display = mock(VendingDisplay.class);
+        doThrow(new AssertionError("Broken display")).when(display).displayString(anyString());
+        VendingMachine broken = new VendingMachine(
+            display,
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet()
+        );
+        subject.close();
+        client.close();
+        subject = new MachineServer(
+            Arrays.asList(broken, machine()),
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)
+        );
+        client = SocketChannel.open(subject.getAddress());
+
+        ByteBuffer requests = ByteBuffer.allocateDirect(2 * MachineProtocol.REQUEST_SIZE);
+        MachineProtocol.putRequest(requests, MachineProtocol.CANCEL_ORDER, 0, 0, 1);
+        MachineProtocol.putRequest(requests, MachineProtocol.INSERT_COIN, 1, 50, 2);
+
+        ByteBuffer responses = send(requests, 2);
+
+        Assertions.assertThat(MachineProtocol.getStatus(responses, 0)).isEqualTo(MachineProtocol.INTERNAL_ERROR);
+        Assertions.assertThat(MachineProtocol.getStatus(responses, MachineProtocol.RESPONSE_SIZE))
+            .isEqualTo(MachineProtocol.OK);
+        Assertions.assertThat(MachineProtocol.getFirst(responses, MachineProtocol.RESPONSE_SIZE)).isEqualTo(50);
+    }
+
+    @Test
+    public void answers_more_requests_than_fit_in_buffers() throws IOException {
+        int count = 10000;
+        ByteBuffer requests = ByteBuffer.allocateDirect(count * MachineProtocol.REQUEST_SIZE);
+        for (int i = 0; i < count; i++)
+            MachineProtocol.putRequest(requests, MachineProtocol.QUERY_STATE, 0, 0, i);
+
+        ByteBuffer responses = send(requests, count);
+
+        for (int i = 0; i < count; i++)
+            Assertions.assertThat(MachineProtocol.getTag(responses, i * MachineProtocol.RESPONSE_SIZE)).isEqualTo(i);
+    }
+
+    /**
+     * Writes everything before reading anything, so a server that doesn't keep up would block both sides
+     */
+    private ByteBuffer send(ByteBuffer requests, int responseCount) throws IOException {
+        requests.flip();
+        ByteBuffer responses = ByteBuffer.allocateDirect(responseCount * MachineProtocol.RESPONSE_SIZE);
+        client.configureBlocking(false);
+        while (requests.hasRemaining() || responses.hasRemaining()) {
+            client.write(requests);
+            if (client.read(responses) < 0)
+                throw new IOException("Server closed the connection");
+        }
+        return responses;
+    }
+}
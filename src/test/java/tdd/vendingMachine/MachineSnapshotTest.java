@@ -0,0 +1,143 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.persistence.MachineSnapshot;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MachineSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VendingMachine createMachine() {
+        return new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet()
+        );
+    }
+
+    private VendingMachine read(Path path) throws IOException {
+        return MachineSnapshot.read(path, new NullVendingDisplay(), new GreedyReturnAmountStrategy());
+    }
+
+    @Test
+    public void restores_full_machine_state() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.snapshot");
+        VendingMachine original = createMachine();
+        original.selectShelf(2);
+        original.insertCoin(MoneyFactory.createMoney(1));
+        original.restockShelf(4, 2);
+        original.insertCoin(MoneyFactory.createMoney(0, 5));
+
+        MachineSnapshot.write(path, original);
+        VendingMachine restored = read(path);
+
+        for (int i = 0; i < original.getShelfCount(); i++) {
+            Assertions.assertThat(restored.getProductType(i)).isEqualTo(original.getProductType(i));
+            Assertions.assertThat(restored.getProductCount(i)).isEqualTo(original.getProductCount(i));
+        }
+        Assertions.assertThat(restored.getCoins().getDenominations()).isEqualTo(original.getCoins().getDenominations());
+        Assertions.assertThat(restored.getCoins().getCounts()).isEqualTo(original.getCoins().getCounts());
+        Assertions.assertThat(restored.getCredit()).isEqualTo(MoneyFactory.createMoney(0, 5));
+        Assertions.assertThat(restored.getPendingItems()).isEqualTo(original.getPendingItems());
+        Assertions.assertThat(restored.getPendingChange()).isEqualTo(original.getPendingChange());
+    }
+
+    @Test
+    public void restored_machine_continues_transaction() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.snapshot");
+        VendingMachine original = createMachine();
+        original.insertCoin(MoneyFactory.createMoney(1));
+        MachineSnapshot.write(path, original);
+
+        VendingMachine restored = read(path);
+        restored.selectShelf(3);
+
+        Assertions.assertThat(restored.receiveItem().getName()).isEqualTo("Water");
+        Assertions.assertThat(restored.receiveChangeMoney()).isEqualTo(MoneyFactory.createMoney(0, 6));
+    }
+
+    @Test
+    public void fleet_shares_products() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("fleet.snapshot");
+        List<VendingMachine> fleet = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            VendingMachine machine = createMachine();
+            machine.restockShelf(i % machine.getShelfCount(), i);
+            fleet.add(machine);
+        }
+
+        MachineSnapshot.write(path, fleet);
+        List<VendingMachine> restored = MachineSnapshot.read(path, NullVendingDisplay::new, GreedyReturnAmountStrategy::new);
+
+        Assertions.assertThat(restored).hasSize(10);
+        for (int i = 0; i < 10; i++)
+            Assertions.assertThat(restored.get(i).getProductCount(i % 5)).isEqualTo(fleet.get(i).getProductCount(i % 5));
+        Assertions.assertThat(restored.get(9).getProductType(0)).isSameAs(restored.get(0).getProductType(0));
+    }
+
+    @Test
+    public void keeps_product_sku() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.snapshot");
+        ProductType product = new ProductType(MoneyFactory.createMoney(1), "Cola", "SKU-1");
+        MachineSnapshot.write(path, new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            Collections.singletonList(new VendingShelf(product, 1)),
+            Configuration.getDefaultCoinSet()
+        ));
+
+        Assertions.assertThat(read(path).getProductType(0).getSku()).isEqualTo("SKU-1");
+    }
+
+    @Test
+    public void overwrites_previous_snapshot() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.snapshot");
+        VendingMachine machine = createMachine();
+        MachineSnapshot.write(path, machine);
+        machine.restockShelf(0, 10);
+        MachineSnapshot.write(path, machine);
+
+        Assertions.assertThat(read(path).getProductCount(0)).isEqualTo(13);
+        Assertions.assertThat(folder.getRoot().list()).containsExactly("machine.snapshot");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejects_truncated_snapshot() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.snapshot");
+        MachineSnapshot.write(path, createMachine());
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+
+        read(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejects_unknown_product() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.snapshot");
+        VendingMachine machine = createMachine();
+        machine.selectShelf(3);
+        machine.insertCoin(MoneyFactory.createMoney(0, 5));
+        MachineSnapshot.write(path, machine);
+        // Last value is the product of the item waiting in the tray
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        bytes.putInt(bytes.capacity() - 4, 99);
+        Files.write(path, bytes.array());
+
+        read(path);
+    }
+}
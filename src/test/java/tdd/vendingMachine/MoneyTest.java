@@ -0,0 +1,44 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class MoneyTest {
+
+    @Test
+    public void same_value_as_coin_factory() {
+        Assertions.assertThat(MoneyFactory.createMoney(8, 7).toBigDecimal()).isEqualTo(MoneyFactory.createCoin(8, 7));
+    }
+
+    @Test
+    public void from_big_decimal_ignores_scale() {
+        Assertions.assertThat(Money.fromBigDecimal(new BigDecimal("2"))).isEqualTo(Money.ofCents(200));
+        Assertions.assertThat(Money.fromBigDecimal(new BigDecimal("0.100"))).isEqualTo(Money.ofCents(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fractions_of_cent_rejected() {
+        Money.fromBigDecimal(new BigDecimal("0.005"));
+    }
+
+    @Test
+    public void to_big_decimal_has_proper_scale() {
+        Assertions.assertThat(Money.ofCents(5).toBigDecimal().scale()).isEqualTo(2);
+    }
+
+    @Test
+    public void arithmetic() {
+        Money result = MoneyFactory.createMoney(2).subtract(MoneyFactory.createMoney(0, 5)).add(Money.ofCents(1));
+        Assertions.assertThat(result.getCents()).isEqualTo(151);
+        Assertions.assertThat(result.compareTo(MoneyFactory.createMoney(1, 5))).isPositive();
+    }
+
+    @Test
+    public void negative_values() {
+        Money result = Money.ZERO.subtract(Money.ofCents(30));
+        Assertions.assertThat(result.isNegative()).isTrue();
+        Assertions.assertThat(result.toString()).isEqualTo("-0.30");
+    }
+}
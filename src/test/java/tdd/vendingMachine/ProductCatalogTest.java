@@ -0,0 +1,85 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ProductCatalogTest {
+    private final ProductType cola = new ProductType(MoneyFactory.createMoney(2), "Cola", "SKU-1");
+    private final ProductType chips = new ProductType(MoneyFactory.createMoney(3), "Chips", "SKU-2");
+
+    private VendingMachine createMachine(List<VendingShelf> shelves) {
+        return new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            shelves,
+            Configuration.getDefaultCoinSet()
+        );
+    }
+
+    @Test
+    public void grid_codes_go_row_by_row() {
+        Assertions.assertThat(ProductCatalog.gridCodes(5, 2)).containsExactly("A1", "A2", "B1", "B2", "C1");
+        Assertions.assertThat(ProductCatalog.gridCodes(28 * 10, 10).get(27 * 10)).isEqualTo("AB1");
+    }
+
+    @Test
+    public void finds_shelves_and_products() {
+        ProductCatalog subject = new ProductCatalog(
+            Arrays.asList(new VendingShelf(cola, 3), new VendingShelf(chips, 1), new VendingShelf(cola, 4)),
+            Arrays.asList("A1", "A2", "B1")
+        );
+
+        Assertions.assertThat(subject.indexOfShelf("B1")).isEqualTo(2);
+        Assertions.assertThat(subject.indexOfShelf("Z9")).isEqualTo(-1);
+        Assertions.assertThat(subject.getProduct("SKU-2")).isEqualTo(chips);
+        Assertions.assertThat(subject.getShelvesOf("SKU-1")).containsExactly(0, 2);
+        Assertions.assertThat(subject.getShelvesOf("SKU-3")).isEmpty();
+        Assertions.assertThat(subject.getTotalStock("SKU-1")).isEqualTo(7);
+        Assertions.assertThat(subject.getStockValue()).isEqualTo(MoneyFactory.createMoney(17));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_duplicated_codes() {
+        new ProductCatalog(
+            Arrays.asList(new VendingShelf(cola, 3), new VendingShelf(chips, 1)),
+            Arrays.asList("A1", "A1")
+        );
+    }
+
+    @Test
+    public void follows_sales_and_restocks_of_machine() {
+        VendingMachine machine = createMachine(Arrays.asList(new VendingShelf(cola, 1), new VendingShelf(cola, 2)));
+        ProductCatalog subject = machine.createCatalog(ProductCatalog.gridCodes(2, 1));
+
+        machine.selectShelf("A1");
+        machine.insertCoin(MoneyFactory.createMoney(2));
+        machine.restockShelf(1, 5);
+
+        Assertions.assertThat(machine.receiveItem()).isEqualTo(cola);
+        Assertions.assertThat(subject.getStock(0)).isZero();
+        Assertions.assertThat(subject.getEmptyShelfCount()).isEqualTo(1);
+        Assertions.assertThat(subject.getTotalStock("SKU-1")).isEqualTo(7);
+    }
+
+    @Test
+    public void indexes_thousands_of_shelves() {
+        List<VendingShelf> shelves = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String sku = "SKU-" + (i % 100);
+            shelves.add(new VendingShelf(new ProductType(Money.ofCents(100 + i % 100), sku, sku), 2));
+        }
+
+        ProductCatalog subject = new ProductCatalog(shelves, ProductCatalog.gridCodes(shelves.size(), 100));
+
+        Assertions.assertThat(subject.getDistinctProductCount()).isEqualTo(100);
+        Assertions.assertThat(subject.getShelvesOf("SKU-42")).hasSize(100).startsWith(42, 142);
+        Assertions.assertThat(subject.getTotalStock("SKU-42")).isEqualTo(200);
+        Assertions.assertThat(subject.indexOfShelf("CV100")).isEqualTo(9_999);
+    }
+}
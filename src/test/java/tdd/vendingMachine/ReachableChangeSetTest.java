@@ -0,0 +1,95 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ReachableChangeSetTest {
+    private static boolean[] payable(long[] denominations, int[] counts, int bound) {
+        boolean[] result = new boolean[bound + 1];
+        result[0] = true;
+        for (int i = 0; i < denominations.length; i++)
+            for (int coin = 0; coin < counts[i]; coin++)
+                for (int amount = bound; amount >= denominations[i]; amount--)
+                    result[amount] |= result[amount - (int) denominations[i]];
+        return result;
+    }
+
+    private static void assertMatches(CoinInventory inventory, int bound) {
+        boolean[] expected = payable(inventory.getDenominations(), inventory.getCounts(), bound);
+        for (int amount = 0; amount <= bound; amount++)
+            Assertions.assertThat(inventory.mayPay(amount)).as("amount %d", amount).isEqualTo(expected[amount]);
+    }
+
+    @Test
+    public void untracked_inventory_may_pay_anything() {
+        CoinInventory inventory = new CoinInventory(new long[]{50}, new int[]{0});
+
+        Assertions.assertThat(inventory.mayPay(30)).isTrue();
+    }
+
+    @Test
+    public void amounts_above_bound_are_left_to_strategy() {
+        CoinInventory inventory = new CoinInventory(new long[]{50}, new int[]{0});
+        inventory.trackReachable(100);
+
+        Assertions.assertThat(inventory.mayPay(50)).isFalse();
+        Assertions.assertThat(inventory.mayPay(150)).isTrue();
+    }
+
+    @Test
+    public void follows_added_and_removed_coins() {
+        CoinInventory inventory = new CoinInventory(new long[]{50, 20, 10}, new int[]{1, 0, 0});
+        inventory.trackReachable(100);
+
+        Assertions.assertThat(inventory.mayPay(70)).isFalse();
+        inventory.add(Money.ofCents(20));
+        Assertions.assertThat(inventory.mayPay(70)).isTrue();
+        inventory.removeAll(new int[]{1, 0, 0});
+        Assertions.assertThat(inventory.mayPay(70)).isFalse();
+        Assertions.assertThat(inventory.mayPay(20)).isTrue();
+    }
+
+    @Test
+    public void follows_more_coins_than_fit_under_bound() {
+        CoinInventory inventory = new CoinInventory(new long[]{50, 20}, new int[]{40, 40});
+        inventory.trackReachable(100);
+
+        inventory.removeAll(new int[]{38, 39});
+        assertMatches(inventory, 100);
+        inventory.removeAll(new int[]{2, 0});
+        assertMatches(inventory, 100);
+        inventory.addAll(new int[]{1, 30});
+        assertMatches(inventory, 100);
+    }
+
+    @Test
+    public void same_as_brute_force_for_random_inventories() {
+        Random random = new Random(42);
+        for (int test = 0; test < 200; test++) {
+            int size = 1 + random.nextInt(5);
+            long[] denominations = random.ints(1, 200).distinct().limit(size).asLongStream().toArray();
+            int[] counts = new int[size];
+            for (int i = 0; i < size; i++)
+                counts[i] = random.nextInt(6);
+            int bound = 1 + random.nextInt(700);
+
+            CoinInventory inventory = new CoinInventory(denominations, counts);
+            inventory.trackReachable(bound);
+            assertMatches(inventory, bound);
+
+            for (int step = 0; step < 5; step++) {
+                int index = random.nextInt(size);
+                if (random.nextBoolean()) {
+                    inventory.add(Money.ofCents(denominations[index]));
+                } else {
+                    int[] plan = new int[size];
+                    plan[index] = Math.min(inventory.getCount(index), 1 + random.nextInt(2));
+                    inventory.removeAll(plan);
+                }
+                assertMatches(inventory, bound);
+            }
+        }
+    }
+}
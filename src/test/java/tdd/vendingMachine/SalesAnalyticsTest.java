@@ -0,0 +1,143 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.metrics.ProductSales;
+import tdd.vendingMachine.metrics.SalesAnalytics;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SalesAnalyticsTest {
+    private static final int SODA = 0;
+    private static final int WATER = 3;
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(1));
+    private final SalesAnalytics analytics = new SalesAnalytics(5, now::get);
+
+    private VendingMachine createMachine() {
+        VendingMachine machine = new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet()
+        );
+        machine.setListener(analytics);
+        return machine;
+    }
+
+    private static void buy(VendingMachine machine, int shelf, long... coins) {
+        machine.selectShelf(shelf);
+        for (long coin : coins)
+            machine.insertCoin(Money.ofCents(coin));
+    }
+
+    @Test
+    public void counts_sales_per_shelf_and_product() {
+        VendingMachine machine = createMachine();
+
+        buy(machine, WATER, 50);
+        buy(machine, WATER, 20, 20);
+        buy(machine, SODA, 200);
+        machine.selectShelf(SODA);
+        machine.insertCoin(Money.ofCents(100));
+        machine.cancelOrder();
+
+        ProductType water = machine.getProductType(WATER);
+        Assertions.assertThat(analytics.getShelfSales(WATER)).isEqualTo(2);
+        Assertions.assertThat(analytics.getShelfSales(SODA)).isEqualTo(1);
+        Assertions.assertThat(analytics.getProductSales(water)).isEqualTo(2);
+        Assertions.assertThat(analytics.getProductRevenue(water)).isEqualTo(Money.ofCents(80));
+        Assertions.assertThat(analytics.getProductSales(machine.getProductType(1))).isEqualTo(0);
+        Assertions.assertThat(analytics.getCancels()).isEqualTo(1);
+    }
+
+    @Test
+    public void counts_change_failures_per_shelf() {
+        VendingMachine machine = new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            new CoinInventory(Configuration.getDefaultCoinSet().getDenominations(), new int[6])
+        );
+        machine.setListener(analytics);
+
+        buy(machine, WATER, 50);
+
+        Assertions.assertThat(analytics.getShelfChangeFailures(WATER)).isEqualTo(1);
+        Assertions.assertThat(analytics.getChangeFailures()).isEqualTo(1);
+        Assertions.assertThat(analytics.getShelfSales(WATER)).isEqualTo(0);
+        Assertions.assertThat(analytics.getCancels()).isEqualTo(1);
+    }
+
+    @Test
+    public void ranks_best_selling_products() {
+        List<ProductType> products = Configuration.getDefaultProductsSet();
+        for (int i = 0; i < products.size(); i++)
+            for (int sale = 0; sale < 10 * i + 1; sale++)
+                analytics.onSale(i, products.get(i), products.get(i).getPriceMoney());
+
+        List<ProductSales> top = analytics.getTopProducts(3);
+
+        Assertions.assertThat(top).extracting(ProductSales::getProduct)
+            .containsExactly(products.get(4), products.get(3), products.get(2));
+        Assertions.assertThat(top.get(0).getSales()).isEqualTo(41);
+        Assertions.assertThat(top.get(0).getRevenue())
+            .isEqualTo(Money.ofCents(41 * products.get(4).getPriceMoney().getCents()));
+        Assertions.assertThat(analytics.getTopProducts(10)).hasSize(products.size());
+        Assertions.assertThat(analytics.getTopProducts(0)).isEmpty();
+    }
+
+    @Test
+    public void windows_forget_old_sales() {
+        ProductType water = Configuration.getDefaultProductsSet().get(WATER);
+
+        analytics.onSale(WATER, water, Money.ofCents(40));
+        now.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        analytics.onSale(WATER, water, Money.ofCents(40));
+
+        Assertions.assertThat(analytics.getSalesLastMinute()).isEqualTo(2);
+        Assertions.assertThat(analytics.getRevenueLastMinute()).isEqualTo(Money.ofCents(80));
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(45));
+        Assertions.assertThat(analytics.getSalesLastMinute()).isEqualTo(1);
+        Assertions.assertThat(analytics.getSalesLastHour()).isEqualTo(2);
+
+        // The bucket of the first sale is reused a whole ring later
+        now.addAndGet(TimeUnit.SECONDS.toMillis(45));
+        analytics.onSale(WATER, water, Money.ofCents(40));
+        Assertions.assertThat(analytics.getSalesLastMinute()).isEqualTo(1);
+        Assertions.assertThat(analytics.getRevenueLastHour()).isEqualTo(Money.ofCents(120));
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(1));
+        Assertions.assertThat(analytics.getSalesLastHour()).isEqualTo(0);
+        Assertions.assertThat(analytics.getShelfSales(WATER)).isEqualTo(3);
+    }
+
+    @Test
+    public void counts_every_sale_of_many_threads() throws InterruptedException {
+        ProductType water = Configuration.getDefaultProductsSet().get(WATER);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int sale = 0; sale < 10_000; sale++) {
+                    if (sale % 100 == 0)
+                        now.addAndGet(300);
+                    analytics.onSale(WATER, water, Money.ofCents(40));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Assertions.assertThat(analytics.getShelfSales(WATER)).isEqualTo(40_000);
+        Assertions.assertThat(analytics.getProductRevenue(water)).isEqualTo(Money.ofCents(1_600_000));
+        Assertions.assertThat(analytics.getSalesLastHour()).isEqualTo(40_000);
+    }
+}
@@ -0,0 +1,229 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tdd.vendingMachine.display.NullVendingDisplay;
+import tdd.vendingMachine.persistence.JournalRecordType;
+import tdd.vendingMachine.persistence.JournalReplay;
+import tdd.vendingMachine.persistence.JournalingVendingMachine;
+import tdd.vendingMachine.persistence.TransactionJournal;
+import tdd.vendingMachine.strategy.BudgetedReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ChangeStatus;
+import tdd.vendingMachine.strategy.GreedyReturnAmountStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class TransactionJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VendingMachine createMachine(TransactionJournal journal) {
+        return new JournalingVendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet(),
+            journal
+        );
+    }
+
+    private VendingMachine createPlainMachine() {
+        return new VendingMachine(
+            new NullVendingDisplay(),
+            new GreedyReturnAmountStrategy(),
+            Configuration.getDefaultShelfSet(),
+            Configuration.getDefaultCoinSet()
+        );
+    }
+
+    @Test
+    public void replay_restores_machine_state() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        VendingMachine original;
+        try (TransactionJournal journal = TransactionJournal.open(path, 4)) {
+            original = createMachine(journal);
+            original.selectShelf(0);
+            original.insertCoin(MoneyFactory.createMoney(5));
+            original.receiveItem();
+            original.restockShelf(2, 4);
+            original.selectShelf(2);
+            original.insertCoin(MoneyFactory.createMoney(0, 5));
+            original.cancelOrder();
+            original.buyBasket(
+                Arrays.asList(new BasketLine(1, 1), new BasketLine(3, 2)),
+                Collections.singletonList(MoneyFactory.createMoney(5))
+            );
+            original.insertCoin(MoneyFactory.createMoney(5));
+            original.receiveItems();
+            original.selectShelf(3);
+            original.insertCoin(MoneyFactory.createMoney(1));
+        }
+
+        VendingMachine restored = createPlainMachine();
+        JournalReplay.replay(path, restored);
+
+        for (int i = 0; i < original.getShelfCount(); i++)
+            Assertions.assertThat(restored.getProductCount(i)).isEqualTo(original.getProductCount(i));
+        Assertions.assertThat(restored.getCoins().getCounts()).isEqualTo(original.getCoins().getCounts());
+        Assertions.assertThat(restored.receiveItem().getName()).isEqualTo(original.receiveItem().getName());
+        Assertions.assertThat(restored.receiveChangeMoney()).isEqualTo(original.receiveChangeMoney());
+    }
+
+    @Test
+    public void sales_are_journaled_for_audit() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+            VendingMachine machine = createMachine(journal);
+            machine.selectShelf(3);
+            machine.insertCoin(MoneyFactory.createMoney(0, 5));
+
+            // Select, insert and the sale itself
+            Assertions.assertThat(journal.getRecordCount()).isEqualTo(3);
+        }
+
+        Assertions.assertThat(JournalReplay.replay(path, createPlainMachine())).isEqualTo(3);
+    }
+
+    @Test
+    public void failed_commands_are_marked_and_replayed() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        VendingMachine original;
+        try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+            original = createMachine(journal);
+            original.insertCoin(MoneyFactory.createMoney(1));
+            try {
+                original.selectShelf(99);
+                Assertions.fail("Shelf 99 doesn't exist");
+            } catch (IndexOutOfBoundsException expected) {
+                // Journaled with a FAILED record after it
+            }
+            original.selectShelf(3);
+
+            // Insert, failed select and its mark, select and its sale
+            Assertions.assertThat(journal.getRecordCount()).isEqualTo(5);
+        }
+
+        VendingMachine restored = createPlainMachine();
+        Assertions.assertThat(JournalReplay.replay(path, restored)).isEqualTo(5);
+        Assertions.assertThat(restored.getProductCount(3)).isEqualTo(original.getProductCount(3));
+        Assertions.assertThat(restored.receiveChangeMoney()).isEqualTo(original.receiveChangeMoney());
+    }
+
+    @Test
+    public void replay_restores_escrow_mode() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        VendingMachine original;
+        try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+            original = createMachine(journal);
+            original.setEscrowMode(true);
+            original.insertCoin(MoneyFactory.createMoney(0, 5));
+        }
+
+        VendingMachine restored = createPlainMachine();
+        JournalReplay.replay(path, restored);
+
+        // Inserted coin is still in escrow, not with the machine's coins
+        Assertions.assertThat(restored.getCoins().getCounts()).isEqualTo(original.getCoins().getCounts());
+        restored.cancelOrder();
+        Assertions.assertThat(restored.receiveChangeMoney()).isEqualTo(MoneyFactory.createMoney(0, 5));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void replay_rejects_sales_the_machine_does_not_make() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+            journal.append(JournalRecordType.SELECT_SHELF, 3, 0);
+            journal.append(JournalRecordType.INSERT_COIN, 0, 10);
+            journal.append(JournalRecordType.SALE, 3, 40);
+        }
+
+        JournalReplay.replay(path, createPlainMachine());
+    }
+
+    @Test
+    public void replay_keeps_listener_of_machine() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+            VendingMachine machine = createMachine(journal);
+            machine.selectShelf(3);
+            machine.insertCoin(MoneyFactory.createMoney(0, 5));
+        }
+        VendingMachineListener listener = mock(VendingMachineListener.class);
+        VendingMachine restored = createPlainMachine();
+        restored.setListener(listener);
+
+        JournalReplay.replay(path, restored);
+
+        verify(listener).onSale(3, restored.getProductType(3), MoneyFactory.createMoney(0, 4));
+        Assertions.assertThat(restored.getListener()).isSameAs(listener);
+    }
+
+    @Test
+    public void forwards_change_timeouts_to_listener() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        VendingMachineListener listener = mock(VendingMachineListener.class);
+        try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+            VendingMachine machine = new JournalingVendingMachine(
+                new NullVendingDisplay(),
+                (denominations, counts, amount, usedCoins) -> ChangeStatus.TIMED_OUT,
+                Configuration.getDefaultShelfSet(),
+                Configuration.getDefaultCoinSet(),
+                journal
+            );
+            machine.setListener(listener);
+            machine.selectShelf(3);
+            machine.insertCoin(MoneyFactory.createMoney(1));
+        }
+
+        verify(listener).onChangeTimeout(3, MoneyFactory.createMoney(0, 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_time_limited_strategy() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        try (TransactionJournal journal = TransactionJournal.open(path, 0)) {
+            new JournalingVendingMachine(
+                new NullVendingDisplay(),
+                new BudgetedReturnAmountStrategy(1000, TimeUnit.MILLISECONDS.toNanos(1)),
+                Configuration.getDefaultShelfSet(),
+                Configuration.getDefaultCoinSet(),
+                journal
+            );
+        }
+    }
+
+    @Test
+    public void reopened_journal_appends_after_existing_records() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("machine.journal");
+        try (TransactionJournal journal = TransactionJournal.open(path, 1)) {
+            journal.append(JournalRecordType.RESTOCK_SHELF, 0, 1);
+        }
+        try (TransactionJournal journal = TransactionJournal.open(path, 1)) {
+            Assertions.assertThat(journal.getRecordCount()).isEqualTo(1);
+            journal.append(JournalRecordType.RESTOCK_SHELF, 1, 2);
+        }
+
+        VendingMachine restored = createPlainMachine();
+        Assertions.assertThat(JournalReplay.replay(path, restored)).isEqualTo(2);
+        Assertions.assertThat(restored.getProductCount(0)).isEqualTo(4);
+        Assertions.assertThat(restored.getProductCount(1)).isEqualTo(5);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejects_file_that_is_not_a_journal() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("other.bin");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+
+        JournalReplay.replay(path, createPlainMachine());
+    }
+}
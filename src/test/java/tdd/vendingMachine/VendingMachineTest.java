@@ -6,18 +6,24 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
 import tdd.vendingMachine.display.VendingDisplay;
+import tdd.vendingMachine.strategy.ArrayReturnAmountStrategy;
+import tdd.vendingMachine.strategy.ChangeStatus;
 import tdd.vendingMachine.strategy.ReturnAmountByDenominationsStrategy;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Optional;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.contains;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -33,6 +39,22 @@ public class VendingMachineTest {
         MockitoAnnotations.initMocks(this);
     }
 
+    private ChangeStatus executeForAnyAmount() {
+        return fakeStrategy.execute(any(long[].class), any(int[].class), anyLong(), any(int[].class));
+    }
+
+    private ChangeStatus executeFor(long cents) {
+        return fakeStrategy.execute(any(long[].class), any(int[].class), eq(cents), any(int[].class));
+    }
+
+    private static Answer<ChangeStatus> plan(int... usedCoins) {
+        return invocation -> {
+            int[] result = (int[]) invocation.getArguments()[3];
+            System.arraycopy(usedCoins, 0, result, 0, usedCoins.length);
+            return ChangeStatus.FOUND;
+        };
+    }
+
     @Test
     public void just_a_stupid_passing_test_to_ensure_that_tests_are_run() {
         Assertions.assertThat(new VendingMachine()).isNotNull();
@@ -48,7 +70,7 @@ public class VendingMachineTest {
             Collections.singletonList(new Pair<>(MoneyFactory.createCoin(1), 0))
         );
 
-        when(fakeStrategy.execute(any(), any())).thenReturn(Optional.of(Collections.singletonList(1)));
+        when(executeForAnyAmount()).thenAnswer(plan(1));
 
         subject.selectShelf(0);
         subject.insertCoin(MoneyFactory.createCoin(1));
@@ -68,7 +90,7 @@ public class VendingMachineTest {
             Collections.singletonList(new Pair<>(MoneyFactory.createCoin(1), 0))
         );
 
-        when(fakeStrategy.execute(any(), any())).thenReturn(Optional.of(Collections.singletonList(1)));
+        when(executeForAnyAmount()).thenAnswer(plan(1));
 
         subject.insertCoin(MoneyFactory.createCoin(1));
         subject.selectShelf(0);
@@ -86,7 +108,7 @@ public class VendingMachineTest {
             Collections.singletonList(new Pair<>(MoneyFactory.createCoin(1), 0))
         );
 
-        when(fakeStrategy.execute(any(), any())).thenReturn(Optional.of(Collections.singletonList(1)));
+        when(executeForAnyAmount()).thenAnswer(plan(1));
 
         subject.insertCoin(MoneyFactory.createCoin(1));
         subject.selectShelf(0);
@@ -109,7 +131,7 @@ public class VendingMachineTest {
             )
         );
 
-        when(fakeStrategy.execute(any(), any())).thenReturn(Optional.of(Arrays.asList(2, 0)));
+        when(executeForAnyAmount()).thenAnswer(plan(2, 0));
 
         subject.insertCoin(MoneyFactory.createCoin(3));
         subject.selectShelf(0);
@@ -132,10 +154,8 @@ public class VendingMachineTest {
             )
         );
 
-        when(fakeStrategy.execute(any(), eq(MoneyFactory.createCoin(2))))
-            .thenReturn(Optional.of(Arrays.asList(2, 0, 0)));
-        when(fakeStrategy.execute(any(), eq(MoneyFactory.createCoin(3))))
-            .thenReturn(Optional.of(Arrays.asList(0, 1, 0)));
+        when(executeFor(200)).thenAnswer(plan(2, 0, 0));
+        when(executeFor(300)).thenAnswer(plan(0, 1, 0));
 
         subject.insertCoin(MoneyFactory.createCoin(3));
         subject.selectShelf(0);
@@ -161,9 +181,8 @@ public class VendingMachineTest {
             Collections.singletonList(new Pair<>(MoneyFactory.createCoin(2), 0))
         );
 
-        when(fakeStrategy.execute(any(), eq(MoneyFactory.createCoin(1)))).thenReturn(Optional.empty());
-        when(fakeStrategy.execute(any(), eq(MoneyFactory.createCoin(2))))
-            .thenReturn(Optional.of(Collections.singletonList(1)));
+        when(executeFor(100)).thenReturn(ChangeStatus.IMPOSSIBLE);
+        when(executeFor(200)).thenAnswer(plan(1));
 
         subject.insertCoin(MoneyFactory.createCoin(2));
         subject.selectShelf(0);
@@ -173,6 +192,158 @@ public class VendingMachineTest {
         Assertions.assertThat(subject.receiveChange()).isEqualTo(MoneyFactory.createCoin(2));
     }
 
+    @Test
+    public void doesnt_ask_strategy_for_change_coins_cant_pay() {
+        ProductType fakeProduct = new ProductType(MoneyFactory.createCoin(1), "fake product");
+        VendingMachine subject = new VendingMachine(
+            fakeDisplay,
+            fakeStrategy,
+            Collections.singletonList(new VendingShelf(fakeProduct, 1)),
+            Collections.singletonList(new Pair<>(MoneyFactory.createCoin(2), 0))
+        );
+
+        when(executeFor(200)).thenAnswer(plan(1));
+
+        subject.insertCoin(MoneyFactory.createCoin(2));
+        subject.selectShelf(0);
+
+        verify(fakeStrategy, never()).execute(any(long[].class), any(int[].class), eq(100L), any(int[].class));
+        Assertions.assertThat(subject.receiveItem()).isNull();
+        Assertions.assertThat(subject.receiveChange()).isEqualTo(MoneyFactory.createCoin(2));
+    }
+
+    @Test
+    public void returns_money_when_change_takes_too_long() {
+        ProductType fakeProduct = new ProductType(MoneyFactory.createCoin(1), "fake product");
+        VendingMachine subject = new VendingMachine(
+            fakeDisplay,
+            fakeStrategy,
+            Collections.singletonList(new VendingShelf(fakeProduct, 1)),
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(2), 0),
+                new Pair<>(MoneyFactory.createCoin(1), 1)
+            )
+        );
+        VendingMachineListener listener = mock(VendingMachineListener.class);
+        subject.setListener(listener);
+
+        when(executeForAnyAmount()).thenReturn(ChangeStatus.TIMED_OUT);
+
+        subject.insertCoin(MoneyFactory.createCoin(2));
+        subject.selectShelf(0);
+
+        verify(fakeDisplay).displayString(contains("too long"));
+        verify(listener).onChangeTimeout(0, Money.ofCents(100));
+        verify(listener, never()).onChangeFailure(anyInt(), any(Money.class));
+        Assertions.assertThat(subject.receiveItem()).isNull();
+        Assertions.assertThat(subject.receiveChange()).isEqualTo(MoneyFactory.createCoin(2));
+        Assertions.assertThat(subject.getCoins().getCounts()).containsExactly(0, 1);
+    }
+
+    @Test
+    public void sale_uses_speculated_change() {
+        VendingMachine subject = machineWithSmallCoins(3);
+        subject.setSpeculation(Runnable::run, new ArrayReturnAmountStrategy());
+
+        subject.selectShelf(0);
+        subject.insertCoin(MoneyFactory.createCoin(1));
+
+        verify(fakeStrategy, never()).execute(any(long[].class), any(int[].class), anyLong(), any(int[].class));
+        Assertions.assertThat(subject.receiveItem()).isNotNull();
+        Assertions.assertThat(subject.receiveChangeMoney()).isEqualTo(Money.ofCents(30));
+        Assertions.assertThat(subject.getCoins().getCounts()).containsExactly(1, 0);
+    }
+
+    @Test
+    public void calculates_change_when_speculation_isnt_ready() {
+        VendingMachine subject = machineWithSmallCoins(3);
+        subject.setSpeculation(task -> { }, new ArrayReturnAmountStrategy());
+        when(executeForAnyAmount()).thenAnswer(plan(0, 3));
+
+        subject.selectShelf(0);
+        subject.insertCoin(MoneyFactory.createCoin(1));
+
+        Assertions.assertThat(subject.receiveItem()).isNotNull();
+        Assertions.assertThat(subject.getCoins().getCounts()).containsExactly(1, 0);
+    }
+
+    private VendingMachine machineWithSmallCoins(int count) {
+        return new VendingMachine(
+            fakeDisplay,
+            fakeStrategy,
+            Collections.singletonList(new VendingShelf(new ProductType(MoneyFactory.createCoin(0, 7), "fake product"), 1)),
+            Arrays.asList(
+                new Pair<>(MoneyFactory.createCoin(1), 0),
+                new Pair<>(MoneyFactory.createCoin(0, 1), count)
+            )
+        );
+    }
+
+    @Test
+    public void warns_when_large_coins_cant_get_change() {
+        machineWithSmallCoins(2).selectShelf(0);
+
+        verify(fakeDisplay).displayString(contains("Exact change"));
+    }
+
+    @Test
+    public void doesnt_warn_when_large_coins_get_change() {
+        machineWithSmallCoins(3).selectShelf(0);
+
+        verify(fakeDisplay, never()).displayString(contains("Warning"));
+    }
+
+    @Test
+    public void escrow_cancel_gives_back_inserted_coins() {
+        VendingMachine subject = machineWithSmallCoins(0);
+        subject.setEscrowMode(true);
+
+        subject.insertCoin(MoneyFactory.createCoin(0, 1));
+        subject.insertCoin(MoneyFactory.createCoin(1));
+        Assertions.assertThat(subject.getCoins().getCounts()).containsExactly(1, 1);
+        subject.cancelOrder();
+
+        verify(fakeStrategy, never()).execute(any(long[].class), any(int[].class), anyLong(), any(int[].class));
+        Assertions.assertThat(subject.receiveChange()).isEqualTo(MoneyFactory.createCoin(1, 1));
+        Assertions.assertThat(subject.getCoins().getCounts()).containsExactly(0, 0);
+    }
+
+    @Test
+    public void escrow_failed_sale_gives_back_inserted_coins() {
+        VendingMachine subject = machineWithSmallCoins(3);
+        subject.setEscrowMode(true);
+        when(executeForAnyAmount()).thenReturn(ChangeStatus.IMPOSSIBLE);
+
+        subject.selectShelf(0);
+        subject.insertCoin(MoneyFactory.createCoin(1));
+
+        Assertions.assertThat(subject.receiveItem()).isNull();
+        Assertions.assertThat(subject.receiveChange()).isEqualTo(MoneyFactory.createCoin(1));
+        Assertions.assertThat(subject.getCoins().getCounts()).containsExactly(0, 3);
+    }
+
+    @Test
+    public void escrow_sale_keeps_inserted_coins() {
+        VendingMachine subject = machineWithSmallCoins(3);
+        subject.setEscrowMode(true);
+        when(executeForAnyAmount()).thenAnswer(plan(0, 3));
+
+        subject.selectShelf(0);
+        subject.insertCoin(MoneyFactory.createCoin(1));
+
+        Assertions.assertThat(subject.receiveItem()).isNotNull();
+        Assertions.assertThat(subject.receiveChange()).isEqualTo(MoneyFactory.createCoin(0, 3));
+        Assertions.assertThat(subject.getCoins().getCounts()).containsExactly(1, 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void escrow_mode_cant_change_with_money_inserted() {
+        VendingMachine subject = machineWithSmallCoins(3);
+        subject.insertCoin(MoneyFactory.createCoin(1));
+
+        subject.setEscrowMode(true);
+    }
+
     @Test
     public void cancel_returns_money() {
         ProductType fakeProduct = new ProductType(MoneyFactory.createCoin(2), "fake product");
@@ -183,7 +354,7 @@ public class VendingMachineTest {
             Collections.singletonList(new Pair<>(MoneyFactory.createCoin(1), 0))
         );
 
-        when(fakeStrategy.execute(any(), any())).thenReturn(Optional.of(Collections.singletonList(1)));
+        when(executeForAnyAmount()).thenAnswer(plan(1));
 
         subject.insertCoin(MoneyFactory.createCoin(1));
         subject.cancelOrder();
@@ -202,7 +373,7 @@ public class VendingMachineTest {
             Collections.singletonList(new Pair<>(MoneyFactory.createCoin(1), 0))
         );
 
-        when(fakeStrategy.execute(any(), any())).thenReturn(Optional.of(Collections.singletonList(1)));
+        when(executeForAnyAmount()).thenAnswer(plan(1));
 
         subject.insertCoin(MoneyFactory.createCoin(1));
         subject.selectShelf(0);
@@ -227,7 +398,7 @@ public class VendingMachineTest {
             Collections.singletonList(new Pair<>(MoneyFactory.createCoin(1), 0))
         );
 
-        when(fakeStrategy.execute(any(), any())).thenReturn(Optional.of(Collections.singletonList(0)));
+        when(executeForAnyAmount()).thenAnswer(plan(0));
 
         subject.selectShelf(0);
         for (int i = 0; i < 3; i++)
@@ -235,7 +406,7 @@ public class VendingMachineTest {
 
         // Price
         for (int i = 3; i >=0; i--)
-            verify(fakeDisplay).displayMoney(MoneyFactory.createCoin(i));
+            verify(fakeDisplay).displayMoney(MoneyFactory.createMoney(i));
     }
 
     @Test
@@ -0,0 +1,66 @@
+package tdd.vendingMachine;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VendingShelfTest {
+    private final ProductType product = new ProductType(MoneyFactory.createMoney(1), "fake product");
+
+    @Test
+    public void takes_products_until_empty() {
+        VendingShelf subject = new VendingShelf(product, 2);
+
+        Assertions.assertThat(subject.tryTakeProduct()).isTrue();
+        Assertions.assertThat(subject.tryTakeProduct()).isTrue();
+        Assertions.assertThat(subject.tryTakeProduct()).isFalse();
+        Assertions.assertThat(subject.getProductCount()).isZero();
+    }
+
+    @Test
+    public void takes_all_or_nothing() {
+        VendingShelf subject = new VendingShelf(product, 2);
+
+        Assertions.assertThat(subject.tryTakeProducts(3)).isFalse();
+        Assertions.assertThat(subject.getProductCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void snapshot_doesnt_follow_changes() {
+        VendingShelf subject = new VendingShelf(product, 2);
+        VendingShelf snapshot = subject.snapshot();
+
+        subject.restock(3);
+
+        Assertions.assertThat(snapshot.getProductCount()).isEqualTo(2);
+        Assertions.assertThat(subject.getProductCount()).isEqualTo(5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cant_restock_negative_count() {
+        new VendingShelf(product, 2).restock(-1);
+    }
+
+    @Test
+    public void concurrent_buyers_never_oversell() throws InterruptedException {
+        VendingShelf subject = new VendingShelf(product, 10_000);
+        AtomicInteger taken = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                while (subject.tryTakeProduct())
+                    taken.incrementAndGet();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Assertions.assertThat(taken.get()).isEqualTo(10_000);
+        Assertions.assertThat(subject.getProductCount()).isZero();
+    }
+}